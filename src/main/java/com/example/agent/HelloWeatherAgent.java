@@ -15,14 +15,17 @@
  */
 package com.example.agent;
 
+import com.example.agent.context.CallerLabels;
+import com.example.agent.scheduling.FairModelScheduler.Priority;
+import com.example.agent.scheduling.ScheduledModel;
 import com.google.adk.agents.BaseAgent;
 import com.google.adk.agents.LlmAgent;
 import com.google.adk.agents.RunConfig;
 import com.google.adk.events.Event;
+import com.google.adk.models.LlmRegistry;
 import com.google.adk.runner.InMemoryRunner;
 import com.google.adk.sessions.Session;
 import com.google.adk.tools.Annotations.Schema;
-import com.google.adk.tools.FunctionTool;
 import com.google.genai.types.Content;
 import com.google.genai.types.Part;
 import io.reactivex.rxjava3.core.Flowable;
@@ -46,8 +49,11 @@ public class HelloWeatherAgent {
                 
                 When asked about weather information, you MUST use the `getWeather` function.
                 """)
-            .model(MODEL_NAME)
-            .tools(FunctionTool.create(HelloWeatherAgent.class, "getWeather"))
+            // Interactive: admitted ahead of batch pipelines sharing this model's slots in this process; the labels
+            // make each user of the agent a tenant of its own, so users share the slots fairly
+            .model(new ScheduledModel(LlmRegistry.getLlm(MODEL_NAME), APP_NAME, Priority.INTERACTIVE))
+            .beforeModelCallback(CallerLabels.beforeModelCallback())
+            .tools(HelloWeatherAgentTools.getWeather())
             .build();
     }
 
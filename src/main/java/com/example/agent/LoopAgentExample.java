@@ -2,6 +2,17 @@ package com.example.agent;
 
 import static com.google.adk.agents.LlmAgent.IncludeContents.NONE;
 
+import com.example.agent.context.CallerLabels;
+import com.example.agent.metrics.AgentMetrics;
+import com.example.agent.metrics.UsageMeteringModel;
+import com.example.agent.refinement.DocumentEditing;
+import com.example.agent.refinement.DocumentEditingTools;
+import com.example.agent.replay.Cassettes;
+import com.example.agent.routing.RoutingModel;
+import com.example.agent.routing.RoutingPolicy;
+import com.example.agent.scheduling.FairModelScheduler.Priority;
+import com.example.agent.scheduling.ScheduledModel;
+import com.example.agent.tracing.Tracer;
 import com.google.adk.agents.BaseAgent;
 import com.google.adk.agents.LlmAgent;
 import com.google.adk.agents.LoopAgent;
@@ -10,7 +21,6 @@ import com.google.adk.events.Event;
 import com.google.adk.runner.InMemoryRunner;
 import com.google.adk.sessions.Session;
 import com.google.adk.tools.Annotations.Schema;
-import com.google.adk.tools.FunctionTool;
 import com.google.adk.tools.ToolContext;
 import com.google.genai.types.Content;
 import com.google.genai.types.Part;
@@ -23,11 +33,21 @@ public class LoopAgentExample {
     private static final String APP_NAME = "LoopingIterativeWritingPipeline";
     private static final String USER_ID = "test_user_456";
     private static final String MODEL_NAME = "gemini-3.1-pro-preview";
+    private static final String FAST_MODEL_NAME = "gemini-3.1-flash-lite-preview";
 
     // --- State Keys ---
-    private static final String STATE_CURRENT_DOC = "current_document";
+    private static final String STATE_CURRENT_DOC = DocumentEditing.DOCUMENT_KEY;
     private static final String STATE_CRITICISM = "criticism";
 
+    // REFINEMENT_MODE=patch makes the refiner edit the document in place instead of writing it out again;
+    // compare the usage.RefinerAgent.<mode>.* metrics of both modes on long documents. They are recorded per
+    // iteration, so a rejected edit and the replaceDocument call after it count as one refinement
+    private static final String REFINEMENT_MODE = System.getenv().getOrDefault("REFINEMENT_MODE", "rewrite");
+    private static final boolean PATCH_REFINEMENT = "patch".equals(REFINEMENT_MODE);
+
+    // Agent, model and tool spans; exported as OTLP-JSON when ADK_TRACE_FILE is set
+    private static final Tracer TRACER = Tracer.fromEnvironment(APP_NAME);
+
     public static BaseAgent ROOT_AGENT = initAgent();
 
     public static void main(String[] args) {
@@ -47,12 +67,25 @@ public class LoopAgentExample {
         return Map.of();
     }
 
+    // --- Model Routing ---
+    // Each agent gets its own router: short drafts and critiques go to the flash-lite model, long documents
+    // and agents that had to escalate on their previous iteration go to the pro model. The agents label their
+    // model calls with their caller, so that one session's escalations do not steer the routing of the others.
+    // Both models are recorded to / replayed from a cassette when ADK_CASSETTE_MODE is set.
+    // The pipeline makes up to 11 calls per document, so they are scheduled as batch work behind interactive agents.
+    private static RoutingModel routedModel(RoutingPolicy policy) {
+        return new RoutingModel(
+                new ScheduledModel(Cassettes.model(FAST_MODEL_NAME), APP_NAME, Priority.BATCH),
+                new ScheduledModel(Cassettes.model(MODEL_NAME), APP_NAME, Priority.BATCH),
+                policy);
+    }
+
     // --- Agent Definitions ---
     public static SequentialAgent initAgent() {
         // STEP 1: Initial Writer Agent (Runs ONCE at the beginning)
         LlmAgent initialWriterAgent =
-                LlmAgent.builder()
-                        .model(MODEL_NAME)
+                TRACER.instrument(LlmAgent.builder(), CallerLabels.beforeModelCallback())
+                        .model(routedModel(RoutingPolicy.builder("InitialWriterAgent").build()))
                         .name("InitialWriterAgent")
                         .description(
                                 "Writes the initial document draft based on the topic, aiming for some initial"
@@ -70,9 +103,12 @@ public class LoopAgentExample {
                         .build();
 
         // STEP 2a: Critic Agent (Inside the Refinement Loop)
+        UsageMeteringModel criticModel = new UsageMeteringModel("CriticAgent." + REFINEMENT_MODE,
+                routedModel(RoutingPolicy.builder("CriticAgent").longPromptChars(3_000).threshold(2).build()));
         LlmAgent criticAgentInLoop =
-                LlmAgent.builder()
-                        .model(MODEL_NAME)
+                TRACER.instrument(LlmAgent.builder(), CallerLabels.beforeModelCallback(),
+                                criticModel.afterAgentCallback())
+                        .model(criticModel)
                         .name("CriticAgent")
                         .description(
                                 "Reviews the current draft, providing critique if clear improvements are needed,"
@@ -102,13 +138,49 @@ public class LoopAgentExample {
                         .build();
 
         // STEP 2b: Refiner/Exiter Agent (Inside the Refinement Loop)
-        LlmAgent refinerAgentInLoop =
-                LlmAgent.builder()
-                        .model(MODEL_NAME)
+        // The refiner's tools are trivial, so declaring them should not push it to the pro model
+        UsageMeteringModel refinerModel = new UsageMeteringModel("RefinerAgent." + REFINEMENT_MODE,
+                routedModel(RoutingPolicy.builder("RefinerAgent").toolWeight(0).build()));
+        LlmAgent.Builder refinerBuilder =
+                TRACER.instrument(LlmAgent.builder(), CallerLabels.beforeModelCallback(),
+                                refinerModel.afterAgentCallback())
+                        .model(refinerModel)
                         .name("RefinerAgent")
                         .description(
                                 "Refines the document based on critique, or calls exitLoop if critique indicates"
                                         + " completion.")
+                        .includeContents(NONE);
+        LlmAgent refinerAgentInLoop = PATCH_REFINEMENT
+                // The edit tools update current_document themselves, so the refiner has no output key
+                ? refinerBuilder
+                        .instruction(
+                                """
+                                            You are a Creative Writing Assistant refining a document based on feedback OR exiting the process.
+                                            **Current Document:**
+                                            ```
+                                            {{current_document}}
+                                            ```
+                                            **Critique/Suggestions:**
+                                            {{criticism}}
+                                        
+                                            **Task:**
+                                            Analyze the 'Critique/Suggestions'.
+                                            IF the critique is *exactly* "No major issues found.":
+                                            You MUST call the 'exitLoop' function. Do not output any text.
+                                            ELSE (the critique contains actionable feedback):
+                                            Apply the suggestions with ONE call to the 'applyDocumentEdits' function, passing all edits as a JSON array.
+                                            Each "find" or "after" text must be copied exactly from the 'Current Document' and occur in it only once; quote a short phrase or sentence, not more.
+                                            Inserted text is used as given, so include the spaces or line breaks it needs.
+                                            Only call 'replaceDocument' with the complete refined document if most of the document must change or if 'applyDocumentEdits' reports an error.
+                                        
+                                            Do not output any text. Either call applyDocumentEdits (or replaceDocument) OR call the exitLoop function.
+                                        """)
+                        .tools(
+                                LoopAgentExampleTools.exitLoop(),
+                                DocumentEditingTools.applyDocumentEdits(),
+                                DocumentEditingTools.replaceDocument())
+                        .build()
+                : refinerBuilder
                         .instruction(
                                 """
                                             You are a Creative Writing Assistant refining a document based on feedback OR exiting the process.
@@ -129,13 +201,14 @@ public class LoopAgentExample {
                                             Do not add explanations. Either output the refined document OR call the exitLoop function.
                                         """)
                         .outputKey(STATE_CURRENT_DOC)
-                        .includeContents(NONE)
-                        .tools(FunctionTool.create(LoopAgentExample.class, "exitLoop"))
+                        .tools(LoopAgentExampleTools.exitLoop())
                         .build();
 
         // STEP 2: Refinement Loop Agent
+        // exitLoop stops the loop before the refiner's own after-agent callback runs, so the loop's callback
+        // records the refiner's last iteration
         LoopAgent refinementLoop =
-                LoopAgent.builder()
+                TRACER.instrument(LoopAgent.builder(), refinerModel.afterAgentCallback())
                         .name("RefinementLoop")
                         .description("Repeatedly refines the document with critique and then exits.")
                         .subAgents(criticAgentInLoop, refinerAgentInLoop)
@@ -143,13 +216,14 @@ public class LoopAgentExample {
                         .build();
 
         // STEP 3: Overall Sequential Pipeline
-        return SequentialAgent.builder()
+        // The tracer needs the agent tree to parent each agent's spans and number the loop iterations
+        return TRACER.register(TRACER.instrument(SequentialAgent.builder())
                         .name(APP_NAME)
                         .description(
                                 "Writes an initial document and then iteratively refines it with critique using an"
                                         + " exit tool.")
                         .subAgents(initialWriterAgent, refinementLoop)
-                        .build();
+                        .build());
     }
 
     public void runAgent(String prompt) {
@@ -169,5 +243,9 @@ public class LoopAgentExample {
                         System.out.println(event.stringifyContent());
                     }
                 });
+
+        // Time per iteration in the critic, the refiner and exitLoop
+        TRACER.lastCriticalPath().ifPresent(criticalPath -> System.out.println(criticalPath.format()));
+        System.out.println(AgentMetrics.report());
     }
 }
\ No newline at end of file
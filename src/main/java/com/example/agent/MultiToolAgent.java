@@ -1,18 +1,19 @@
 package com.example.agent;
 
+import com.example.agent.tools.ConcurrentToolCalls;
 import com.google.adk.agents.BaseAgent;
 import com.google.adk.agents.LlmAgent;
 import com.google.adk.events.Event;
 import com.google.adk.runner.InMemoryRunner;
 import com.google.adk.sessions.Session;
 import com.google.adk.tools.Annotations.Schema;
-import com.google.adk.tools.FunctionTool;
 import com.google.genai.types.Content;
 import com.google.genai.types.Part;
 import com.kitfox.svg.A;
 import io.reactivex.rxjava3.core.Flowable;
 import java.nio.charset.StandardCharsets;
 import java.text.Normalizer;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -30,6 +31,13 @@ public class MultiToolAgent {
     public static BaseAgent ROOT_AGENT = initAgent();
 
     public static BaseAgent initAgent() {
+        // "time and weather in New York" yields both calls in one model turn: run them concurrently
+        ConcurrentToolCalls concurrentToolCalls =
+                ConcurrentToolCalls.builder()
+                        .maxConcurrency(4)
+                        .defaultTimeout(Duration.ofSeconds(10))
+                        .build();
+
         return LlmAgent.builder()
                 .name(NAME)
                 .model(MODEL_NAME)
@@ -38,8 +46,9 @@ public class MultiToolAgent {
                         "You are a helpful agent who can answer user questions about the time and weather"
                                 + " in a city.")
                 .tools(
-                        FunctionTool.create(MultiToolAgent.class, "getCurrentTime"),
-                        FunctionTool.create(MultiToolAgent.class, "getWeather"))
+                        concurrentToolCalls.wrap(MultiToolAgentTools.getCurrentTime()),
+                        concurrentToolCalls.wrap(MultiToolAgentTools.getWeather()))
+                .afterModelCallback(concurrentToolCalls.afterModelCallback())
                 .build();
     }
 
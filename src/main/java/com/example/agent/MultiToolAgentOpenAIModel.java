@@ -1,14 +1,15 @@
 package com.example.agent;
 
+import com.example.agent.resilience.ResilientModel;
 import com.google.adk.agents.BaseAgent;
 import com.google.adk.agents.LlmAgent;
 import com.google.adk.events.Event;
+import com.google.adk.models.LlmRegistry;
 import com.google.adk.models.springai.SpringAI;
 import com.google.adk.runner.InMemoryRunner;
 import com.google.adk.sessions.Session;
 import com.google.adk.tools.Annotations;
 import com.google.adk.tools.Annotations.Schema;
-import com.google.adk.tools.FunctionTool;
 import com.google.genai.types.Content;
 import com.google.genai.types.Part;
 import io.reactivex.rxjava3.core.Flowable;
@@ -28,6 +29,7 @@ public class MultiToolAgentOpenAIModel {
     private static String NAME = "MultiToolAgent-OpenAIModel";
     private static final String APP_NAME = "MultiToolAgent-OpenAIModel";
     private static final String MODEL_NAME = "gpt-4o-mini";
+    private static final String FALLBACK_MODEL_NAME = "gemini-3.1-flash-lite-preview";
 
     // The run your agent with Dev UI, the ROOT_AGENT should be a global public static variable.
     public static BaseAgent ROOT_AGENT = initAgent();
@@ -40,16 +42,22 @@ public class MultiToolAgentOpenAIModel {
         // Wrap with SpringAI
         SpringAI springAI = new SpringAI(openAiModel, MODEL_NAME);
 
+        // Adaptive timeouts and a circuit breaker in front of OpenAI; Gemini answers while it is unhealthy
+        // (created on the first failover, so Google credentials are only needed then)
+        ResilientModel model = ResilientModel.builder("openai", springAI)
+                .fallback(() -> LlmRegistry.getLlm(FALLBACK_MODEL_NAME))
+                .build();
+
         return LlmAgent.builder()
                 .name(NAME)
-                .model(springAI)
+                .model(model)
                 .description("Agent to answer questions about the time and weather in a city.")
                 .instruction(
                         "You are a helpful agent who can answer user questions about the time and weather"
                                 + " in a city.")
                 .tools(
-                        FunctionTool.create(MultiToolAgentOpenAIModel.class, "getCurrentTime"),
-                        FunctionTool.create(MultiToolAgentOpenAIModel.class, "getWeather"))
+                        MultiToolAgentOpenAIModelTools.getCurrentTime(),
+                        MultiToolAgentOpenAIModelTools.getWeather())
                 .build();
     }
 
@@ -1,15 +1,25 @@
 package com.example.agent;
 
+import com.example.agent.agents.DataflowSequentialAgent;
+import com.example.agent.agents.QuorumParallelAgent;
+import com.example.agent.context.CallerLabels;
+import com.example.agent.replay.Cassettes;
+import com.example.agent.retrieval.LocalResearchSearchTools;
+import com.example.agent.scheduling.FairModelScheduler.Priority;
+import com.example.agent.scheduling.ScheduledModel;
+import com.example.agent.tracing.Tracer;
+import com.google.adk.agents.BaseAgent;
 import com.google.adk.agents.LlmAgent;
-import com.google.adk.agents.ParallelAgent;
 import com.google.adk.agents.SequentialAgent;
 import com.google.adk.events.Event;
 import com.google.adk.runner.InMemoryRunner;
 import com.google.adk.sessions.Session;
-import com.google.adk.tools.GoogleSearchTool;
+import com.google.adk.tools.BaseTool;
 import com.google.genai.types.Content;
 import com.google.genai.types.Part;
 import io.reactivex.rxjava3.core.Flowable;
+import java.time.Duration;
+import java.util.List;
 
 public class ParallelResearchPipeline {
 
@@ -17,87 +27,157 @@ public class ParallelResearchPipeline {
     private static final String USER_ID = "research_user_01";
     private static final String MODEL_NAME = "gemini-3.1-flash-lite-preview";
 
-    // Assume google_search is an instance of the GoogleSearchTool
-    private static final GoogleSearchTool googleSearchTool = new GoogleSearchTool();
+    // Local BM25 search over the research corpus: deterministic, offline and in-process
+    // (declaration and invoker generated at compile time, see FunctionToolProcessor)
+    private static final BaseTool SEARCH_CORPUS_TOOL = LocalResearchSearchTools.searchCorpus();
+
+    // Agent, model and tool spans; exported as OTLP-JSON when ADK_TRACE_FILE is set
+    private static final Tracer TRACER = Tracer.fromEnvironment(APP_NAME);
+
+    // Fan-out completion policy: by default wait for all researchers; RESEARCH_DEADLINE_MS opts in to a deadline
+    private static final int RESEARCH_QUORUM = Integer.parseInt(System.getenv().getOrDefault("RESEARCH_QUORUM", "3"));
+    private static final Duration RESEARCH_DEADLINE = System.getenv("RESEARCH_DEADLINE_MS") == null
+            ? null
+            : Duration.ofMillis(Long.parseLong(System.getenv("RESEARCH_DEADLINE_MS")));
 
     public static void main(String[] args) {
         String query = "Summarize recent sustainable tech advancements.";
-        SequentialAgent sequentialPipelineAgent = initAgent();
-        runAgent(sequentialPipelineAgent, query);
+        // RESEARCH_PIPELINE=dataflow runs the sequentially written, automatically parallelized variant
+        BaseAgent pipelineAgent = "dataflow".equals(System.getenv("RESEARCH_PIPELINE"))
+                ? initDataflowAgent()
+                : initAgent();
+        runAgent(pipelineAgent, query);
     }
 
     public static SequentialAgent initAgent() {
+        List<LlmAgent> researchers = researcherAgents();
+
+        // --- 2. Create the QuorumParallelAgent (Runs researchers concurrently) ---
+        // This agent orchestrates the concurrent execution of the researchers.
+        // It finishes once RESEARCH_QUORUM researchers have stored their results in state or RESEARCH_DEADLINE (if set)
+        // has passed; the stragglers are cancelled and their results replaced with "[NO RESULT..." placeholders.
+        QuorumParallelAgent parallelResearchAgent =
+                TRACER.instrument(QuorumParallelAgent.builder())
+                        .name("ParallelWebResearchAgent")
+                        .subAgents(researchers.toArray(LlmAgent[]::new))
+                        .description("Runs multiple research agents in parallel to gather information.")
+                        .quorum(RESEARCH_QUORUM)
+                        .deadline(RESEARCH_DEADLINE)
+                        // Let 10% of the stragglers finish unseen to measure the latency the policy saves
+                        .shadowSampleRate(0.1)
+                        .build();
+
+        LlmAgent mergerAgent = synthesisAgent();
+
+        // --- 4. Create the SequentialAgent (Orchestrates the overall flow) ---
+        // This is the main agent that will be run. It first executes the ParallelAgent
+        // to populate the state, and then executes the MergerAgent to produce the final output.
+        SequentialAgent sequentialPipelineAgent =
+                TRACER.instrument(SequentialAgent.builder())
+                        .name("ResearchAndSynthesisPipeline")
+                        // Run parallel research first, then merge
+                        .subAgents(parallelResearchAgent, mergerAgent)
+                        .description("Coordinates parallel research and synthesizes the results.")
+                        .build();
+
+        // The tracer needs the agent tree to parent each agent's spans
+        return TRACER.register(sequentialPipelineAgent);
+    }
+
+    /**
+     * The same pipeline written as a plain sequence of the three researchers and the SynthesisAgent. The dataflow
+     * analysis finds that the researchers only write their own output keys and that SynthesisAgent reads all
+     * three, so the researchers run concurrently: {@code [researchers] -> [SynthesisAgent]}.
+     */
+    public static DataflowSequentialAgent initDataflowAgent() {
+        List<LlmAgent> researchers = researcherAgents();
+        DataflowSequentialAgent dataflowPipelineAgent =
+                TRACER.instrument(DataflowSequentialAgent.builder())
+                        .name("ResearchAndSynthesisDataflow")
+                        .subAgents(researchers.get(0), researchers.get(1), researchers.get(2), synthesisAgent())
+                        .description("Researches and synthesizes, running independent steps concurrently.")
+                        // The researchers need neither each other's history nor state from their search tool
+                        .independent("RenewableEnergyResearcher", "EVResearcher", "CarbonCaptureResearcher")
+                        .autoParallelize(true)
+                        .build();
+        return TRACER.register(dataflowPipelineAgent);
+    }
+
+    // Research jobs are batch work: they queue behind interactive agents for the shared model slots. The agents
+    // label their calls, so each user's jobs are a tenant of their own
+    private static ScheduledModel scheduledModel() {
+        return new ScheduledModel(Cassettes.model(MODEL_NAME), APP_NAME, Priority.BATCH);
+    }
+
+    private static List<LlmAgent> researcherAgents() {
+        // Models and tools are recorded to / replayed from a cassette when ADK_CASSETTE_MODE is set
+        BaseTool searchCorpusTool = Cassettes.tool(SEARCH_CORPUS_TOOL);
+
         // --- 1. Define Researcher Sub-Agents (to run in parallel) ---
         // Researcher 1: Renewable Energy
-        LlmAgent researcherAgent1 = LlmAgent.builder()
+        LlmAgent researcherAgent1 = TRACER.instrument(LlmAgent.builder(), CallerLabels.beforeModelCallback())
                 .name("RenewableEnergyResearcher")
-                .model(MODEL_NAME)
+                .model(scheduledModel())
                 .instruction("""
                      You are an AI Research Assistant specializing in energy.
                      Research the latest advancements in 'renewable energy sources'.
-                     Use the Google Search tool provided.
+                     Use the `searchCorpus` tool to search the local research corpus.
                      Summarize your key findings concisely (1-2 sentences).
                      Output *only* the summary.
                      """)
                 .description("Researches renewable energy sources.")
-                .tools(googleSearchTool)
+                .tools(searchCorpusTool)
                 .outputKey("renewable_energy_result") // Store result in state
                 .build();
 
         // Researcher 2: Electric Vehicles
-        LlmAgent researcherAgent2 = LlmAgent.builder()
+        LlmAgent researcherAgent2 = TRACER.instrument(LlmAgent.builder(), CallerLabels.beforeModelCallback())
                 .name("EVResearcher")
-                .model(MODEL_NAME)
+                .model(scheduledModel())
                 .instruction("""
                      You are an AI Research Assistant specializing in transportation.
                      Research the latest developments in 'electric vehicle technology'.
-                     Use the Google Search tool provided.
+                     Use the `searchCorpus` tool to search the local research corpus.
                      Summarize your key findings concisely (1-2 sentences).
                      Output *only* the summary.
                      """)
                 .description("Researches electric vehicle technology.")
-                .tools(googleSearchTool)
+                .tools(searchCorpusTool)
                 .outputKey("ev_technology_result") // Store result in state
                 .build();
 
         // Researcher 3: Carbon Capture
-        LlmAgent researcherAgent3 = LlmAgent.builder()
+        LlmAgent researcherAgent3 = TRACER.instrument(LlmAgent.builder(), CallerLabels.beforeModelCallback())
                 .name("CarbonCaptureResearcher")
-                .model(MODEL_NAME)
+                .model(scheduledModel())
                 .instruction("""
                      You are an AI Research Assistant specializing in climate solutions.
                      Research the current state of 'carbon capture methods'.
-                     Use the Google Search tool provided.
+                     Use the `searchCorpus` tool to search the local research corpus.
                      Summarize your key findings concisely (1-2 sentences).
                      Output *only* the summary.
                      """)
                 .description("Researches carbon capture methods.")
-                .tools(googleSearchTool)
+                .tools(searchCorpusTool)
                 .outputKey("carbon_capture_result") // Store result in state
                 .build();
 
-        // --- 2. Create the ParallelAgent (Runs researchers concurrently) ---
-        // This agent orchestrates the concurrent execution of the researchers.
-        // It finishes once all researchers have completed and stored their results in state.
-        ParallelAgent parallelResearchAgent =
-                ParallelAgent.builder()
-                        .name("ParallelWebResearchAgent")
-                        .subAgents(researcherAgent1, researcherAgent2, researcherAgent3)
-                        .description("Runs multiple research agents in parallel to gather information.")
-                        .build();
+        return List.of(researcherAgent1, researcherAgent2, researcherAgent3);
+    }
 
+    private static LlmAgent synthesisAgent() {
         // --- 3. Define the Merger Agent (Runs *after* the parallel agents) ---
         // This agent takes the results stored in the session state by the parallel agents
         // and synthesizes them into a single, structured response with attributions.
-        LlmAgent mergerAgent =
-                LlmAgent.builder()
+        return TRACER.instrument(LlmAgent.builder(), CallerLabels.beforeModelCallback())
                         .name("SynthesisAgent")
-                        .model(MODEL_NAME)
+                        .model(scheduledModel())
                         .instruction(
                                 """
                                       You are an AI Assistant responsible for combining research findings into a structured report.
                                       Your primary task is to synthesize the following research summaries, clearly attributing findings to their source areas. Structure your response using headings for each topic. Ensure the report is coherent and integrates the key points smoothly.
                                       **Crucially: Your entire response MUST be grounded *exclusively* on the information provided in the 'Input Summaries' below. Do NOT add any external knowledge, facts, or details not present in these specific summaries.**
+                                      If a summary starts with "[NO RESULT", that research did not finish in time: state under its heading that findings for this area are unavailable, and do not write anything else about it.
                                       **Input Summaries:**
                
                                       *   **Renewable Energy:**
@@ -135,24 +215,11 @@ public class ParallelResearchPipeline {
                         // No tools needed for merging
                         // No output_key needed here, as its direct response is the final output of the sequence
                         .build();
-
-        // --- 4. Create the SequentialAgent (Orchestrates the overall flow) ---
-        // This is the main agent that will be run. It first executes the ParallelAgent
-        // to populate the state, and then executes the MergerAgent to produce the final output.
-        SequentialAgent sequentialPipelineAgent =
-                SequentialAgent.builder()
-                        .name("ResearchAndSynthesisPipeline")
-                        // Run parallel research first, then merge
-                        .subAgents(parallelResearchAgent, mergerAgent)
-                        .description("Coordinates parallel research and synthesizes the results.")
-                        .build();
-
-        return sequentialPipelineAgent;
     }
 
-    public static void runAgent(SequentialAgent sequentialPipelineAgent, String query) {
+    public static void runAgent(BaseAgent pipelineAgent, String query) {
         // Create an InMemoryRunner
-        InMemoryRunner runner = new InMemoryRunner(sequentialPipelineAgent, APP_NAME);
+        InMemoryRunner runner = new InMemoryRunner(pipelineAgent, APP_NAME);
         // InMemoryRunner automatically creates a session service. Create a session using the service
         Session session = runner.sessionService().createSession(APP_NAME, USER_ID).blockingGet();
         Content userMessage = Content.fromParts(Part.fromText(query));
@@ -167,5 +234,8 @@ public class ParallelResearchPipeline {
                         System.out.printf("Event Author: %s \n Event Response: %s \n\n\n", event.author(), event.stringifyContent());
                     }
                 });
+
+        // Which researcher held up the SynthesisAgent, and by how much
+        TRACER.lastCriticalPath().ifPresent(criticalPath -> System.out.println(criticalPath.format()));
     }
 }
\ No newline at end of file
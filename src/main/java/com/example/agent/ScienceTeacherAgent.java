@@ -1,7 +1,11 @@
 package com.example.agent;
 
+import com.example.agent.cache.SemanticCache;
+import com.example.agent.cache.SemanticCachingModel;
 import com.google.adk.agents.BaseAgent;
 import com.google.adk.agents.LlmAgent;
+import com.google.adk.models.LlmRegistry;
+import com.google.adk.models.LlmResponse;
 
 /** Science teacher agent. */
 public class ScienceTeacherAgent {
@@ -10,11 +14,20 @@ public class ScienceTeacherAgent {
     // (the agent must be initialized at declaration time)
     public static BaseAgent ROOT_AGENT = initAgent();
 
+    private static final String MODEL_NAME = "gemini-3.1-flash-lite-preview";
+
+    // Minimum similarity for a cached answer; bench/SemanticCacheCheck checks the phrasings it must match
+    public static final double ANSWER_CACHE_THRESHOLD = 0.75;
+
     public static BaseAgent initAgent() {
+        // Students ask the same questions in many phrasings: answer paraphrases from a similarity cache
+        SemanticCache<LlmResponse> answerCache =
+                SemanticCache.builder("ScienceAgent-ADK").threshold(ANSWER_CACHE_THRESHOLD).maxEntries(5_000).build();
+
         return LlmAgent.builder()
                 .name("ScienceAgent-ADK")
                 .description("Science teacher agent")
-                .model("gemini-3.1-flash-lite-preview")
+                .model(new SemanticCachingModel(LlmRegistry.getLlm(MODEL_NAME), answerCache))
                 .instruction("""
                     You are a helpful science teacher that explains
                     science concepts to kids and teenagers.
@@ -1,7 +1,9 @@
 package com.example.agent;
 
+import com.example.agent.resilience.ResilientModel;
 import com.google.adk.agents.BaseAgent;
 import com.google.adk.agents.LlmAgent;
+import com.google.adk.models.LlmRegistry;
 import com.google.adk.models.springai.SpringAI;
 import org.springframework.ai.anthropic.AnthropicChatModel;
 import org.springframework.ai.anthropic.api.AnthropicApi;
@@ -14,6 +16,7 @@ public class ScienceTeacherAgentAnthropicModel {
     public static BaseAgent ROOT_AGENT = initAgent();
 
     private static final String CLAUDE_MODEL = "claude-sonnet-4-6";
+    private static final String FALLBACK_MODEL = "gemini-3.1-flash-lite-preview";
 
     public static BaseAgent initAgent() {
         AnthropicApi anthropicApi =
@@ -24,10 +27,16 @@ public class ScienceTeacherAgentAnthropicModel {
         // Wrap with SpringAI
         SpringAI springAI = new SpringAI(anthropicModel, CLAUDE_MODEL);
 
+        // Adaptive timeouts and a circuit breaker in front of Anthropic; Gemini answers while it is unhealthy
+        // (created on the first failover, so Google credentials are only needed then)
+        ResilientModel model = ResilientModel.builder("anthropic", springAI)
+                .fallback(() -> LlmRegistry.getLlm(FALLBACK_MODEL))
+                .build();
+
         return LlmAgent.builder()
                 .name("ScienceAgent-Anthropic-Sonnet")
                 .description("A science teacher agent that explains science concepts to kids and teenagers using a real Anthropic API.")
-                .model(springAI)
+                .model(model)
                 .instruction("""
                     You are a helpful science teacher that explains
                     science concepts to kids and teenagers.
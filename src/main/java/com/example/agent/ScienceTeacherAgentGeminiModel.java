@@ -2,6 +2,8 @@ package com.example.agent;
 
 import com.google.adk.agents.BaseAgent;
 import com.google.adk.agents.LlmAgent;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.Gemini;
 import com.google.adk.models.springai.SpringAI;
 import com.google.genai.Client;
 import org.springframework.ai.google.genai.GoogleGenAiChatModel;
@@ -16,23 +18,32 @@ public class ScienceTeacherAgentGeminiModel {
 
     private static final String GEMINI_MODEL = "gemini-3.1-flash-lite-preview";
 
+    // "native" calls Gemini with ADK's own client; "springai" goes through Spring AI's GoogleGenAiChatModel
+    private static final String GEMINI_PATH = System.getenv().getOrDefault("GEMINI_PATH", "native");
+
     public static BaseAgent initAgent() {
       // Create Google GenAI client using API key (not Vertex AI)
       Client genAiClient =
           Client.builder().apiKey(System.getenv("GOOGLE_API_KEY")).vertexAI(false).build();
 
-      GoogleGenAiChatOptions options = GoogleGenAiChatOptions.builder().model(GEMINI_MODEL).build();
+      BaseLlm model;
+      if (GEMINI_PATH.equals("springai")) {
+          GoogleGenAiChatOptions options = GoogleGenAiChatOptions.builder().model(GEMINI_MODEL).build();
 
-      GoogleGenAiChatModel geminiModel =
-          GoogleGenAiChatModel.builder().genAiClient(genAiClient).defaultOptions(options).build();
+          GoogleGenAiChatModel geminiModel =
+              GoogleGenAiChatModel.builder().genAiClient(genAiClient).defaultOptions(options).build();
 
-      SpringAI springAI = new SpringAI(geminiModel, GEMINI_MODEL);
+          model = new SpringAI(geminiModel, GEMINI_MODEL);
+      } else {
+          // The native path sends ADK's GenAI contents as they are, with no conversion to Spring AI messages
+          model = Gemini.builder().modelName(GEMINI_MODEL).apiClient(genAiClient).build();
+      }
 
       // Create agent
       return LlmAgent.builder()
               .name("ScienceAgent-Gemini-Flash-3-1")
               .description("A science teacher agent that explains science concepts to kids and teenagers using a real Gemini API")
-              .model(springAI)
+              .model(model)
               .instruction("""
                     You are a helpful science teacher that explains
                     science concepts to kids and teenagers.
@@ -1,8 +1,14 @@
 package com.example.agent;
 
+import com.example.agent.context.CallerLabels;
+import com.example.agent.metrics.AgentMetrics;
+import com.example.agent.output.CodeFenceExtractingModel;
+import com.example.agent.routing.RoutingModel;
+import com.example.agent.routing.RoutingPolicy;
 import com.google.adk.agents.LlmAgent;
 import com.google.adk.agents.SequentialAgent;
 import com.google.adk.events.Event;
+import com.google.adk.models.LlmRegistry;
 import com.google.adk.runner.InMemoryRunner;
 import com.google.adk.sessions.Session;
 import com.google.genai.types.Content;
@@ -14,6 +20,7 @@ public class SequentialAgentExample {
     private static final String APP_NAME = "SequentialCodePipelineAgent";
     private static final String USER_ID = "test_user_456";
     private static final String MODEL_NAME = "gemini-2.5-pro-preview-06-05";
+    private static final String FAST_MODEL_NAME = "gemini-3.1-flash-lite-preview";
 
     public static void main(String[] args) {
         SequentialAgentExample sequentialAgentExample = new SequentialAgentExample();
@@ -23,9 +30,11 @@ public class SequentialAgentExample {
 
     public void runAgent(String prompt) {
 
+        // The writer and the refactorer answer with a single ```java block: their answers end at its closing
+        // fence, and 10% of the calls keep reading the stream to measure the tokens and time this saves.
         LlmAgent codeWriterAgent =
                 LlmAgent.builder()
-                        .model(MODEL_NAME)
+                        .model(new CodeFenceExtractingModel("CodeWriterAgent", LlmRegistry.getLlm(MODEL_NAME), 0.1))
                         .name("CodeWriterAgent")
                         .description("Writes initial Java code based on a specification.")
                         .instruction(
@@ -38,9 +47,15 @@ public class SequentialAgentExample {
                         .outputKey("generated_code")
                         .build();
 
+        // Reviews of short snippets go to the flash-lite model; only long code is escalated to the pro model.
+        RoutingPolicy reviewerPolicy =
+                RoutingPolicy.builder("CodeReviewerAgent").codeWeight(1).longPromptChars(6_000).build();
+
         LlmAgent codeReviewerAgent =
                 LlmAgent.builder()
-                        .model(MODEL_NAME)
+                        .model(new RoutingModel(FAST_MODEL_NAME, MODEL_NAME, reviewerPolicy))
+                        // The router keeps the outcome of the previous call per session
+                        .beforeModelCallback(CallerLabels.beforeModelCallback())
                         .name("CodeReviewerAgent")
                         .description("Reviews code and provides feedback.")
                         .instruction(
@@ -70,7 +85,7 @@ public class SequentialAgentExample {
 
         LlmAgent codeRefactorerAgent =
                 LlmAgent.builder()
-                        .model(MODEL_NAME)
+                        .model(new CodeFenceExtractingModel("CodeRefactorerAgent", LlmRegistry.getLlm(MODEL_NAME), 0.1))
                         .name("CodeRefactorerAgent")
                         .description("Refactors code based on review comments.")
                         .instruction(
@@ -122,5 +137,8 @@ public class SequentialAgentExample {
                         System.out.println(event.stringifyContent());
                     }
                 });
+
+        // Includes codefence.* (time to the closing fence, tokens and latency saved) and router.* metrics
+        System.out.println(AgentMetrics.report());
     }
 }
\ No newline at end of file
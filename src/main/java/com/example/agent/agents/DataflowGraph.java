@@ -0,0 +1,254 @@
+package com.example.agent.agents;
+
+import com.google.adk.agents.BaseAgent;
+import com.google.adk.agents.Instruction;
+import com.google.adk.agents.LlmAgent;
+import com.google.adk.agents.ParallelAgent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The data dependencies between the sub-agents of a sequential pipeline, derived from their definitions.
+ *
+ * An {@link LlmAgent} reads the state keys named by the placeholders of its instruction ({@code {key}},
+ * {@code {{key}}}, or {@code {key?}} when optional) and writes its output key; a composite agent reads and
+ * writes the union of its sub-agents, minus the keys it produces itself before reading them. A sub-agent also
+ * depends on everything before it when its effects cannot be derived this way: when it sees the conversation
+ * history ({@code includeContents} DEFAULT), has tools (which may use session state), has a dynamic
+ * instruction or is a custom agent. Sub-agents declared independent are trusted to only use their keys.
+ *
+ * A sub-agent then depends on the last earlier writer of each key it reads, on the last earlier writer of
+ * each key it writes and on every earlier reader of those keys, so running it as soon as its dependencies
+ * have finished gives the same state as running the sequence in order.
+ */
+public final class DataflowGraph {
+
+    // Same placeholder syntax as ADK's instruction templating
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{+([^{}]*)}+");
+    private static final Pattern STATE_KEY = Pattern.compile("((app|user|temp):)?[A-Za-z_][A-Za-z0-9_]*");
+
+    /** One sub-agent of the pipeline with the keys it reads and writes and the sub-agents it waits for. */
+    public record Node(int index, BaseAgent agent, Set<String> reads, Set<String> optionalReads,
+            Set<String> writes, String barrierReason, Set<Integer> dependencies) {
+
+        public String name() {
+            return agent.name();
+        }
+
+        /** Whether the node depends on all sub-agents before it, because its effects cannot be derived. */
+        public boolean isBarrier() {
+            return barrierReason != null;
+        }
+    }
+
+    private final List<Node> nodes;
+    private final List<String> problems;
+
+    private DataflowGraph(List<Node> nodes, List<String> problems) {
+        this.nodes = nodes;
+        this.problems = problems;
+    }
+
+    /**
+     * Analyses {@code agents} in their declared order. {@code inputKeys} are keys set before the pipeline runs
+     * and {@code independent} names the sub-agents whose history and tools do not affect other sub-agents.
+     */
+    public static DataflowGraph analyze(List<? extends BaseAgent> agents, Set<String> inputKeys,
+            Set<String> independent) {
+        List<Access> accesses = new ArrayList<>();
+        for (BaseAgent agent : agents) {
+            Access access = new Access();
+            collect(agent, access, new LinkedHashSet<>(), independent.contains(agent.name()));
+            accesses.add(access);
+        }
+
+        List<Node> nodes = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
+        for (int j = 0; j < accesses.size(); j++) {
+            Access access = accesses.get(j);
+            Set<Integer> dependencies = new TreeSet<>();
+            for (int i = 0; i < j; i++) {
+                Access earlier = accesses.get(i);
+                if (access.barrierReason != null || earlier.barrierReason != null) {
+                    dependencies.add(i);
+                }
+                // Write-after-read: j must not overwrite a key before an earlier sub-agent has read it
+                if (access.writes.stream().anyMatch(key -> earlier.reads.contains(key)
+                        || earlier.optionalReads.contains(key))) {
+                    dependencies.add(i);
+                }
+            }
+            for (String key : union(access.reads, access.optionalReads, access.writes)) {
+                // Read-after-write and write-after-write: the last earlier writer of the key
+                for (int i = j - 1; i >= 0; i--) {
+                    if (accesses.get(i).writes.contains(key)) {
+                        dependencies.add(i);
+                        break;
+                    }
+                }
+            }
+            for (String key : access.reads) {
+                if (key.startsWith("app:") || key.startsWith("user:") || inputKeys.contains(key)) {
+                    continue;
+                }
+                int writer = -1;
+                for (int i = 0; i < accesses.size(); i++) {
+                    if (i != j && accesses.get(i).writes.contains(key) && (writer == -1 || writer > j)) {
+                        writer = i;
+                    }
+                }
+                String name = agents.get(j).name();
+                if (writer == -1) {
+                    problems.add(name + " reads {" + key + "}, which no sub-agent writes"
+                            + " (declare it as an input key if it is set before the pipeline runs)");
+                } else if (writer > j) {
+                    problems.add(name + " reads {" + key + "} before " + agents.get(writer).name() + " writes it");
+                }
+            }
+            nodes.add(new Node(j, agents.get(j), Set.copyOf(access.reads), Set.copyOf(access.optionalReads),
+                    Set.copyOf(access.writes), access.barrierReason, Set.copyOf(dependencies)));
+        }
+        findCycle(nodes).ifPresent(cycle -> problems.add("Sub-agents depend on each other's output: " + cycle));
+        return new DataflowGraph(List.copyOf(nodes), List.copyOf(problems));
+    }
+
+    public List<Node> nodes() {
+        return nodes;
+    }
+
+    /** Cycles and unresolved keys; a pipeline with problems must not be run. */
+    public List<String> problems() {
+        return problems;
+    }
+
+    /** Sub-agents grouped by the earliest point they can start: each stage only depends on earlier stages. */
+    public List<List<Node>> stages() {
+        int[] level = new int[nodes.size()];
+        List<List<Node>> stages = new ArrayList<>();
+        for (Node node : nodes) {
+            for (int dependency : node.dependencies()) {
+                level[node.index()] = Math.max(level[node.index()], level[dependency] + 1);
+            }
+            while (stages.size() <= level[node.index()]) {
+                stages.add(new ArrayList<>());
+            }
+            stages.get(level[node.index()]).add(node);
+        }
+        return stages;
+    }
+
+    /** One line per stage, e.g. {@code [EVResearcher, CarbonCaptureResearcher] -> [SynthesisAgent]}. */
+    public String describe() {
+        return stages().stream()
+                .map(stage -> stage.stream().map(Node::name).collect(Collectors.joining(", ", "[", "]")))
+                .collect(Collectors.joining(" -> "));
+    }
+
+    private static void collect(BaseAgent agent, Access access, Set<String> writtenBefore, boolean independent) {
+        if (agent instanceof LlmAgent llmAgent) {
+            if (llmAgent.instruction() instanceof Instruction.Static instruction) {
+                Matcher matcher = PLACEHOLDER.matcher(instruction.instruction());
+                while (matcher.find()) {
+                    String placeholder = matcher.group(1).trim();
+                    boolean optional = placeholder.endsWith("?");
+                    String key = optional ? placeholder.substring(0, placeholder.length() - 1) : placeholder;
+                    if (!STATE_KEY.matcher(key).matches() || writtenBefore.contains(key)) {
+                        continue;
+                    }
+                    (optional ? access.optionalReads : access.reads).add(key);
+                }
+            } else {
+                access.barrier(agent.name() + " has a dynamic instruction");
+            }
+            if (!independent) {
+                if (llmAgent.includeContents() == LlmAgent.IncludeContents.DEFAULT) {
+                    access.barrier(agent.name() + " sees the conversation history");
+                } else if (!llmAgent.toolsUnion().isEmpty()) {
+                    access.barrier(agent.name() + " has tools that may use session state");
+                }
+            }
+            llmAgent.outputKey().ifPresent(key -> {
+                access.writes.add(key);
+                writtenBefore.add(key);
+            });
+        } else if (agent.subAgents().isEmpty()) {
+            access.barrier(agent.name() + " is a custom agent");
+        }
+
+        // Sub-agents of a parallel agent do not see each other's writes; in any other agent they run in order
+        Set<String> parallelBase = Set.copyOf(writtenBefore);
+        for (BaseAgent subAgent : agent.subAgents()) {
+            Set<String> written = agent instanceof ParallelAgent ? new LinkedHashSet<>(parallelBase) : writtenBefore;
+            collect(subAgent, access, written, independent);
+            writtenBefore.addAll(written);
+        }
+    }
+
+    /** A cycle in the producer-to-consumer graph, ignoring declaration order, as agent names. */
+    private static Optional<String> findCycle(List<Node> nodes) {
+        int[] state = new int[nodes.size()]; // 0 unvisited, 1 on the stack, 2 done
+        List<Node> stack = new ArrayList<>();
+        for (Node node : nodes) {
+            Optional<String> cycle = visit(node, nodes, state, stack);
+            if (cycle.isPresent()) {
+                return cycle;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> visit(Node node, List<Node> nodes, int[] state, List<Node> stack) {
+        if (state[node.index()] == 2) {
+            return Optional.empty();
+        }
+        if (state[node.index()] == 1) {
+            List<Node> cycle = new ArrayList<>(stack.subList(stack.indexOf(node), stack.size()));
+            cycle.add(node);
+            return Optional.of(cycle.stream().map(Node::name).collect(Collectors.joining(" -> ")));
+        }
+        state[node.index()] = 1;
+        stack.add(node);
+        for (Node consumer : nodes) {
+            if (consumer != node && consumer.reads().stream().anyMatch(node.writes()::contains)) {
+                Optional<String> cycle = visit(consumer, nodes, state, stack);
+                if (cycle.isPresent()) {
+                    return cycle;
+                }
+            }
+        }
+        stack.remove(stack.size() - 1);
+        state[node.index()] = 2;
+        return Optional.empty();
+    }
+
+    @SafeVarargs
+    private static Set<String> union(Collection<String>... keys) {
+        Set<String> union = new LinkedHashSet<>();
+        for (Collection<String> collection : keys) {
+            union.addAll(collection);
+        }
+        return union;
+    }
+
+    /** The keys read and written by one sub-agent and its descendants. */
+    private static final class Access {
+        private final Set<String> reads = new LinkedHashSet<>();
+        private final Set<String> optionalReads = new LinkedHashSet<>();
+        private final Set<String> writes = new LinkedHashSet<>();
+        private String barrierReason;
+
+        void barrier(String reason) {
+            if (barrierReason == null) {
+                barrierReason = reason;
+            }
+        }
+    }
+}
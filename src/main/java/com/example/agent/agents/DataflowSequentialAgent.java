@@ -0,0 +1,198 @@
+package com.example.agent.agents;
+
+import com.example.agent.metrics.AgentMetrics;
+import com.google.adk.agents.BaseAgent;
+import com.google.adk.agents.Callbacks.AfterAgentCallback;
+import com.google.adk.agents.Callbacks.BeforeAgentCallback;
+import com.google.adk.agents.InvocationContext;
+import com.google.adk.events.Event;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subjects.CompletableSubject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@code SequentialAgent} that checks its data dependencies when it is built and can run sub-agents that do
+ * not depend on each other concurrently.
+ *
+ * At build time the sub-agents are analysed with {@link DataflowGraph}: a key read before any sub-agent writes
+ * it, a key that no sub-agent writes and that is not declared with {@link Builder#inputKeys(String...)}, or
+ * sub-agents that consume each other's output fail the build with an {@link IllegalStateException}.
+ *
+ * With {@link Builder#autoParallelize(boolean)} each sub-agent starts, on the I/O scheduler, as soon as the
+ * sub-agents it depends on have finished and their events have been handed to the runner, so it sees the same
+ * session state as in the sequential order. Only the interleaving of events from concurrent sub-agents differs.
+ * The runner must append events to the session synchronously, as the in-memory session service does. Without it
+ * the sub-agents run one after another, as in {@code SequentialAgent}.
+ *
+ * Metrics: {@code dataflow.<name>.latency.us}.
+ */
+public class DataflowSequentialAgent extends BaseAgent {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DataflowSequentialAgent.class);
+
+    private final DataflowGraph graph;
+    private final boolean autoParallelize;
+
+    private DataflowSequentialAgent(Builder builder, DataflowGraph graph) {
+        super(builder.name, builder.description, builder.subAgents, builder.beforeAgentCallbacks,
+                builder.afterAgentCallbacks);
+        this.graph = graph;
+        this.autoParallelize = builder.autoParallelize;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public DataflowGraph graph() {
+        return graph;
+    }
+
+    @Override
+    protected Flowable<Event> runAsyncImpl(InvocationContext invocationContext) {
+        long start = System.nanoTime();
+        Flowable<Event> events = autoParallelize
+                ? Flowable.defer(() -> new Run(invocationContext).events())
+                : Flowable.fromIterable(subAgents()).concatMap(subAgent -> subAgent.runAsync(invocationContext));
+        return events.doOnComplete(() -> AgentMetrics.recordSince("dataflow." + name() + ".latency.us", start));
+    }
+
+    @Override
+    protected Flowable<Event> runLiveImpl(InvocationContext invocationContext) {
+        return Flowable.fromIterable(subAgents()).concatMap(subAgent -> subAgent.runLive(invocationContext));
+    }
+
+    /** One execution: each node starts when the events of the nodes it depends on have been delivered. */
+    private class Run {
+        private final InvocationContext invocationContext;
+        private final int size = graph.nodes().size();
+        private final CompletableSubject[] delivered = new CompletableSubject[size];
+        private final AtomicInteger[] undelivered = new AtomicInteger[size];
+        private final AtomicBoolean[] finished = new AtomicBoolean[size];
+
+        Run(InvocationContext invocationContext) {
+            this.invocationContext = invocationContext;
+            for (int i = 0; i < size; i++) {
+                delivered[i] = CompletableSubject.create();
+                undelivered[i] = new AtomicInteger();
+                finished[i] = new AtomicBoolean();
+            }
+        }
+
+        Flowable<Event> events() {
+            List<Flowable<NodeEvent>> nodes = new ArrayList<>(size);
+            for (DataflowGraph.Node node : graph.nodes()) {
+                int index = node.index();
+                List<Completable> dependencies = node.dependencies().stream()
+                        .map(dependency -> (Completable) delivered[dependency])
+                        .toList();
+                nodes.add(Completable.merge(dependencies)
+                        // ADK model calls block while subscribing: each node needs its own thread, as in ParallelAgent
+                        .andThen(Flowable.defer(() -> node.agent().runAsync(invocationContext))
+                                .subscribeOn(Schedulers.io()))
+                        .map(event -> new NodeEvent(index, event))
+                        .doOnNext(event -> undelivered[index].incrementAndGet())
+                        .doOnComplete(() -> {
+                            finished[index].set(true);
+                            releaseIfDelivered(index);
+                        }));
+            }
+            // doAfterNext runs once the runner has processed the event, i.e. appended it and applied its state
+            return Flowable.merge(nodes)
+                    .doAfterNext(event -> {
+                        undelivered[event.node()].decrementAndGet();
+                        releaseIfDelivered(event.node());
+                    })
+                    .map(NodeEvent::event);
+        }
+
+        private void releaseIfDelivered(int node) {
+            if (finished[node].get() && undelivered[node].get() == 0) {
+                delivered[node].onComplete();
+            }
+        }
+    }
+
+    private record NodeEvent(int node, Event event) {}
+
+    public static class Builder {
+        private String name;
+        private String description = "";
+        private List<BaseAgent> subAgents = List.of();
+        private Set<String> inputKeys = Set.of();
+        private Set<String> independent = Set.of();
+        private boolean autoParallelize;
+        private List<BeforeAgentCallback> beforeAgentCallbacks = List.of();
+        private List<AfterAgentCallback> afterAgentCallbacks = List.of();
+
+        private Builder() {}
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder description(String description) {
+            this.description = description;
+            return this;
+        }
+
+        /** The sub-agents in the order that defines the pipeline's semantics. */
+        public Builder subAgents(BaseAgent... subAgents) {
+            this.subAgents = List.of(subAgents);
+            return this;
+        }
+
+        /** State keys set before the pipeline runs, e.g. by the caller or an earlier pipeline. */
+        public Builder inputKeys(String... inputKeys) {
+            this.inputKeys = Set.of(inputKeys);
+            return this;
+        }
+
+        /**
+         * Declares that these sub-agents only depend on the keys in their instructions: neither the conversation
+         * history left by the sub-agents before them nor their tools' use of session state affect the others.
+         */
+        public Builder independent(String... agentNames) {
+            this.independent = Set.of(agentNames);
+            return this;
+        }
+
+        /** Runs sub-agents concurrently when their data dependencies allow it; off by default. */
+        public Builder autoParallelize(boolean autoParallelize) {
+            this.autoParallelize = autoParallelize;
+            return this;
+        }
+
+        public Builder beforeAgentCallback(BeforeAgentCallback beforeAgentCallback) {
+            this.beforeAgentCallbacks = List.of(beforeAgentCallback);
+            return this;
+        }
+
+        public Builder afterAgentCallback(AfterAgentCallback afterAgentCallback) {
+            this.afterAgentCallbacks = List.of(afterAgentCallback);
+            return this;
+        }
+
+        public DataflowSequentialAgent build() {
+            if (name == null) {
+                throw new IllegalStateException("name is required");
+            }
+            DataflowGraph graph = DataflowGraph.analyze(subAgents, inputKeys, independent);
+            if (!graph.problems().isEmpty()) {
+                throw new IllegalStateException(
+                        "Invalid dataflow in " + name + ":\n  " + String.join("\n  ", graph.problems()));
+            }
+            LOG.info("{} stages: {}", name, graph.describe());
+            return new DataflowSequentialAgent(this, graph);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.agent.agents;
+
+import com.example.agent.metrics.AgentMetrics;
+import com.google.adk.agents.BaseAgent;
+import com.google.adk.agents.Callbacks.AfterAgentCallback;
+import com.google.adk.agents.Callbacks.BeforeAgentCallback;
+import com.google.adk.agents.InvocationContext;
+import com.google.adk.agents.LlmAgent;
+import com.google.adk.events.Event;
+import com.google.adk.events.EventActions;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.processors.FlowableProcessor;
+import io.reactivex.rxjava3.processors.UnicastProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A parallel fan-out that completes once a quorum of its sub-agents has finished or a deadline has passed,
+ * instead of waiting for the slowest one like {@code ParallelAgent}.
+ *
+ * Sub-agents run concurrently on their own branches, each subscribed on the I/O scheduler as in
+ * {@code ParallelAgent}. When {@code quorum} of them have finished, or {@code deadline} has elapsed, the
+ * remaining ones are cancelled and, for every straggling {@link LlmAgent} with an output key it has not written
+ * yet, a state delta sets that key to a placeholder starting with {@link #PLACEHOLDER_PREFIX}, so the next stage
+ * can tell a missing result from a real one. A sub-agent that fails counts as finished without a result and gets
+ * a placeholder too; the stage only fails once so many sub-agents have failed that the quorum cannot be reached.
+ *
+ * Metrics ({@code parallel.<name>.}): {@code trigger.all|quorum|deadline} counts how each run completed,
+ * {@code branches.cancelled} and {@code branches.failed} count cancelled and failed sub-agents and
+ * {@code latency.us} is the time the stage took.
+ * {@code unbounded.latency.us} is the time the slowest branch needed: it is known when all branches finished
+ * and, for a sample of the early completions set by {@code shadowSampleRate}, by letting the stragglers
+ * finish in the background, with their events kept in the session but without their state changes;
+ * {@code saved.us} records the difference for those samples. Comparing the p99 of {@code latency.us} and
+ * {@code unbounded.latency.us} shows what the policy saves.
+ */
+public class QuorumParallelAgent extends BaseAgent {
+
+    /** Start of the value written to the output key of a sub-agent that did not finish in time. */
+    public static final String PLACEHOLDER_PREFIX = "[NO RESULT";
+
+    private final int quorum;
+    private final Duration deadline;
+    private final double shadowSampleRate;
+
+    private QuorumParallelAgent(Builder builder) {
+        super(builder.name, builder.description, builder.subAgents, builder.beforeAgentCallbacks,
+                builder.afterAgentCallbacks);
+        this.quorum = builder.quorum == 0 ? builder.subAgents.size() : builder.quorum;
+        this.deadline = builder.deadline;
+        this.shadowSampleRate = builder.shadowSampleRate;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int quorum() {
+        return quorum;
+    }
+
+    public Duration deadline() {
+        return deadline;
+    }
+
+    @Override
+    protected Flowable<Event> runAsyncImpl(InvocationContext invocationContext) {
+        // Same branch naming as ParallelAgent, so each sub-agent only sees its own conversation history
+        String branch = invocationContext.branch().orElse("");
+        invocationContext.branch(branch.isEmpty() ? name() : branch + "." + name());
+        return Flowable.defer(() -> new Run(invocationContext).start());
+    }
+
+    @Override
+    protected Flowable<Event> runLiveImpl(InvocationContext invocationContext) {
+        return Flowable.error(new UnsupportedOperationException("runLive is not defined for QuorumParallelAgent"));
+    }
+
+    private String metric(String name) {
+        return "parallel." + name() + "." + name;
+    }
+
+    /** The state of one execution of the fan-out. */
+    private class Run {
+        private final InvocationContext invocationContext;
+        private final long startNanos = System.nanoTime();
+        private final FlowableProcessor<Event> events = UnicastProcessor.<Event>create().toSerialized();
+        private final Map<BaseAgent, Disposable> branches = new LinkedHashMap<>();
+        private final Set<BaseAgent> finished = ConcurrentHashMap.newKeySet();
+        private final Map<BaseAgent, Throwable> failed = new ConcurrentHashMap<>();
+        private final Set<String> writtenKeys = ConcurrentHashMap.newKeySet();
+        private Disposable timer = Disposable.empty();
+        private boolean completed;
+        private long completedNanos;
+        private boolean shadowing;
+
+        Run(InvocationContext invocationContext) {
+            this.invocationContext = invocationContext;
+        }
+
+        Flowable<Event> start() {
+            for (BaseAgent subAgent : subAgents()) {
+                branches.put(subAgent, Disposable.empty());
+            }
+            if (deadline != null) {
+                timer = Completable.timer(deadline.toNanos(), TimeUnit.NANOSECONDS)
+                        .subscribe(() -> complete("deadline"));
+            }
+            for (BaseAgent subAgent : subAgents()) {
+                synchronized (this) {
+                    if (completed && !shadowing) {
+                        // The stage already completed, e.g. it failed; the remaining sub-agents are not started
+                        break;
+                    }
+                }
+                // ADK model calls block while subscribing: each branch needs its own thread to run concurrently
+                Disposable subscription = subAgent.runAsync(invocationContext)
+                        .subscribeOn(Schedulers.io())
+                        .subscribe(this::forward, error -> branchFailed(subAgent, error),
+                                () -> branchFinished(subAgent));
+                synchronized (this) {
+                    branches.put(subAgent, subscription);
+                    if (completed && !shadowing) {
+                        subscription.dispose();
+                    }
+                }
+            }
+            return events.doOnCancel(this::cancel);
+        }
+
+        private void forward(Event event) {
+            boolean shadowed;
+            synchronized (this) {
+                // Checked, recorded and emitted together, so complete() never writes a placeholder for a key
+                // that is being written
+                if (!completed) {
+                    writtenKeys.addAll(event.actions().stateDelta().keySet());
+                    events.onNext(event);
+                    return;
+                }
+                shadowed = shadowing;
+            }
+            if (shadowed && !event.partial().orElse(false)) {
+                keepShadowed(event);
+            }
+        }
+
+        /**
+         * Appends an event of a shadowed straggler to the session, which the runner no longer does once the
+         * stage has completed: the straggler builds its next model call from the session, so without its own
+         * tool calls and results it would call its tools again. The event stays on the straggler's branch and
+         * loses its state delta, since the stage's outputs were already settled.
+         */
+        private void keepShadowed(Event event) {
+            Event kept = event.toBuilder()
+                    .actions(event.actions().toBuilder().stateDelta(new ConcurrentHashMap<>()).build())
+                    .build();
+            invocationContext.sessionService().appendEvent(invocationContext.session(), kept).blockingGet();
+        }
+
+        private void fail(Throwable error) {
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                completed = true;
+            }
+            cancel();
+            events.onError(error);
+        }
+
+        private void branchFinished(BaseAgent subAgent) {
+            finished.add(subAgent);
+            settled();
+        }
+
+        /** A failed sub-agent counts as finished without a result, unless the quorum can no longer be reached. */
+        private void branchFailed(BaseAgent subAgent, Throwable error) {
+            failed.put(subAgent, error);
+            AgentMetrics.increment(metric("branches.failed"));
+            if (branches.size() - failed.size() < quorum) {
+                fail(error);
+            }
+            settled();
+        }
+
+        private void settled() {
+            if (finished.size() + failed.size() == branches.size()) {
+                AgentMetrics.recordSince(metric("unbounded.latency.us"), startNanos);
+                synchronized (this) {
+                    if (shadowing) {
+                        AgentMetrics.record(metric("saved.us"), TimeUnit.NANOSECONDS.toMicros(
+                                System.nanoTime() - completedNanos));
+                        return;
+                    }
+                }
+                complete("all");
+            } else if (finished.size() >= quorum) {
+                complete("quorum");
+            }
+        }
+
+        private void complete(String trigger) {
+            List<BaseAgent> unfinished = new ArrayList<>();
+            List<BaseAgent> stragglers = new ArrayList<>();
+            synchronized (this) {
+                if (completed) {
+                    return;
+                }
+                completed = true;
+                completedNanos = System.nanoTime();
+                for (BaseAgent subAgent : branches.keySet()) {
+                    if (!finished.contains(subAgent)) {
+                        unfinished.add(subAgent);
+                        if (!failed.containsKey(subAgent)) {
+                            stragglers.add(subAgent);
+                        }
+                    }
+                }
+                shadowing = !stragglers.isEmpty() && ThreadLocalRandom.current().nextDouble() < shadowSampleRate;
+            }
+            timer.dispose();
+            AgentMetrics.increment(metric("trigger." + trigger));
+            AgentMetrics.add(metric("branches.cancelled"), stragglers.size());
+            AgentMetrics.recordSince(metric("latency.us"), startNanos);
+
+            if (!shadowing) {
+                stragglers.forEach(this::cancelBranch);
+            }
+            // Failed sub-agents get a placeholder too: they have no result either
+            for (BaseAgent subAgent : unfinished) {
+                if (subAgent instanceof LlmAgent llmAgent) {
+                    llmAgent.outputKey()
+                            .filter(key -> !writtenKeys.contains(key))
+                            .ifPresent(key -> events.onNext(placeholder(key, subAgent, trigger)));
+                }
+            }
+            events.onComplete();
+        }
+
+        private Event placeholder(String outputKey, BaseAgent subAgent, String trigger) {
+            Throwable error = failed.get(subAgent);
+            String reason;
+            if (error != null) {
+                reason = "failed: " + error.getMessage();
+            } else if (trigger.equals("deadline")) {
+                reason = "did not finish within the " + deadline.toMillis() + " ms deadline";
+            } else {
+                reason = "was cancelled after " + quorum + " of " + branches.size() + " sub-agents finished";
+            }
+            ConcurrentHashMap<String, Object> stateDelta = new ConcurrentHashMap<>();
+            stateDelta.put(outputKey, PLACEHOLDER_PREFIX + ": " + subAgent.name() + " " + reason + "]");
+            return Event.builder()
+                    .id(Event.generateEventId())
+                    .invocationId(invocationContext.invocationId())
+                    .author(name())
+                    .branch(invocationContext.branch().orElse(null))
+                    .actions(EventActions.builder().stateDelta(stateDelta).build())
+                    .build();
+        }
+
+        private synchronized void cancelBranch(BaseAgent subAgent) {
+            branches.get(subAgent).dispose();
+        }
+
+        private synchronized void cancel() {
+            timer.dispose();
+            branches.values().forEach(Disposable::dispose);
+        }
+    }
+
+    public static class Builder {
+        private String name;
+        private String description = "";
+        private List<BaseAgent> subAgents = List.of();
+        private List<BeforeAgentCallback> beforeAgentCallbacks = List.of();
+        private List<AfterAgentCallback> afterAgentCallbacks = List.of();
+        private int quorum;
+        private Duration deadline;
+        private double shadowSampleRate;
+
+        private Builder() {}
+
+        public Builder name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        public Builder description(String description) {
+            this.description = description;
+            return this;
+        }
+
+        public Builder subAgents(BaseAgent... subAgents) {
+            this.subAgents = List.of(subAgents);
+            return this;
+        }
+
+        /** Number of sub-agents that must finish before the others are cancelled; 0, the default, for all of them. */
+        public Builder quorum(int quorum) {
+            this.quorum = quorum;
+            return this;
+        }
+
+        /** Time after which unfinished sub-agents are cancelled, whether or not the quorum was reached. */
+        public Builder deadline(Duration deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        /** Fraction of early completions whose stragglers run on in the background to measure the latency saved. */
+        public Builder shadowSampleRate(double shadowSampleRate) {
+            this.shadowSampleRate = shadowSampleRate;
+            return this;
+        }
+
+        public Builder beforeAgentCallback(BeforeAgentCallback beforeAgentCallback) {
+            this.beforeAgentCallbacks = List.of(beforeAgentCallback);
+            return this;
+        }
+
+        public Builder afterAgentCallback(AfterAgentCallback afterAgentCallback) {
+            this.afterAgentCallbacks = List.of(afterAgentCallback);
+            return this;
+        }
+
+        public QuorumParallelAgent build() {
+            if (name == null) {
+                throw new IllegalStateException("name is required");
+            }
+            if (quorum < 0 || quorum > subAgents.size()) {
+                throw new IllegalStateException(
+                        "quorum must be between 1 and the number of sub-agents, or 0 for all of them");
+            }
+            return new QuorumParallelAgent(this);
+        }
+    }
+}
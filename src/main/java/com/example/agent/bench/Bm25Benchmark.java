@@ -0,0 +1,119 @@
+package com.example.agent.bench;
+
+import com.example.agent.metrics.Histogram;
+import com.example.agent.retrieval.Bm25Index;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Index build throughput and concurrent query latency of {@link Bm25Index} on a synthetic corpus.
+ *
+ * Documents are 40-120 words drawn from a Zipf-distributed vocabulary, which gives realistic posting list
+ * lengths. Usage: {@code Bm25Benchmark [documents=1000000] [queries=20000] [threads=cpus]}.
+ */
+public class Bm25Benchmark {
+
+    private static final int VOCABULARY = 50_000;
+
+    public static void main(String[] args) throws Exception {
+        int documents = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        String[] vocabulary = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) {
+            vocabulary[i] = "w" + Integer.toString(i, 36);
+        }
+        double[] zipf = zipfCumulative(VOCABULARY, 1.07);
+        Path directory = Files.createTempDirectory("bm25-bench");
+
+        try {
+            // --- Build ---
+            SplittableRandom random = new SplittableRandom(42);
+            Bm25Index index = Bm25Index.open(directory);
+            long bytes = 0;
+            long start = System.nanoTime();
+            for (int doc = 0; doc < documents; doc++) {
+                String text = randomText(random, vocabulary, zipf, 40 + random.nextInt(81));
+                bytes += text.length();
+                index.add("doc-" + doc, text);
+            }
+            index.commit();
+            double buildSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Indexed %,d documents (%,d MB of text) in %.1f s: %,.0f docs/s, %.1f MB/s%n",
+                    documents, bytes >> 20, buildSeconds, documents / buildSeconds, (bytes >> 20) / buildSeconds);
+            System.out.printf("Index size on disk: %,d MB%n", directorySize(directory) >> 20);
+
+            // --- Query ---
+            List<String> queryTexts = new ArrayList<>(queries);
+            for (int i = 0; i < queries; i++) {
+                queryTexts.add(randomText(random, vocabulary, zipf, 2 + random.nextInt(4)));
+            }
+            for (String query : queryTexts.subList(0, Math.min(1_000, queries))) {
+                index.search(query, 10); // warm-up
+            }
+
+            Histogram latencies = new Histogram();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>(queries);
+            for (String query : queryTexts) {
+                futures.add(executor.submit(() -> {
+                    long queryStart = System.nanoTime();
+                    index.search(query, 10);
+                    latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - queryStart));
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            double querySeconds = (System.nanoTime() - start) / 1e9;
+            executor.shutdown();
+            System.out.printf("%,d queries on %d threads: %,.0f queries/s, latency us %s%n",
+                    queries, threads, queries / querySeconds, latencies.snapshot());
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static double[] zipfCumulative(int size, double exponent) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static String randomText(SplittableRandom random, String[] vocabulary, double[] zipf, int words) {
+        StringBuilder text = new StringBuilder(words * 5);
+        for (int i = 0; i < words; i++) {
+            int word = Arrays.binarySearch(zipf, random.nextDouble());
+            text.append(vocabulary[word < 0 ? Math.min(-word - 1, vocabulary.length - 1) : word]).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.agent.bench;
+
+import com.example.agent.metrics.AgentMetrics;
+import com.example.agent.metrics.Histogram;
+import com.example.agent.resilience.AdaptiveTimeout;
+import com.example.agent.resilience.CircuitBreaker;
+import com.example.agent.resilience.FaultInjectingModel;
+import com.example.agent.resilience.ResilientModel;
+import com.google.adk.models.LlmRequest;
+import com.google.genai.types.Content;
+import com.google.genai.types.Part;
+import io.reactivex.rxjava3.core.Flowable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Call latency and failovers of a {@link ResilientModel} through a provider outage, with local
+ * {@link FaultInjectingModel}s as the primary and fallback providers.
+ *
+ * Four phases of calls: healthy, a partial outage (30% failures, 20% stalled calls), a full outage (every call
+ * stalls, as a dead connection does) and recovery. For each phase the benchmark prints the call latency
+ * percentiles, how many calls failed, how many were served by the fallback and the breaker state at its end.
+ * Without the breaker and timeouts every stalled call would wait for the client timeout.
+ * Usage: {@code FailoverBenchmark [callsPerPhase=300] [concurrency=4] [stream=false]}.
+ */
+public class FailoverBenchmark {
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        boolean stream = args.length > 2 && Boolean.parseBoolean(args[2]);
+
+        FaultInjectingModel primary = FaultInjectingModel.builder("primary").latency(Duration.ofMillis(150)).build();
+        FaultInjectingModel fallback = FaultInjectingModel.builder("fallback").latency(Duration.ofMillis(250)).build();
+        AdaptiveTimeout timeout = AdaptiveTimeout.builder()
+                .initial(Duration.ofSeconds(2))
+                .min(Duration.ofMillis(100))
+                .max(Duration.ofSeconds(5))
+                .build();
+        ResilientModel model = ResilientModel.builder("primary", primary)
+                .fallback(fallback)
+                .circuitBreaker(CircuitBreaker.builder("primary")
+                        .openDuration(Duration.ofMillis(500))
+                        .maxOpenDuration(Duration.ofSeconds(4))
+                        .build())
+                .responseTimeout(timeout)
+                .firstChunkTimeout(timeout)
+                .build();
+
+        System.out.printf("%-16s %8s %8s %8s %8s %9s  %s%n",
+                "phase", "p50 ms", "p99 ms", "max ms", "failed", "fallback", "breaker");
+        phase("healthy", model, calls, concurrency, stream);
+        primary.failureRate(0.3);
+        primary.stallRate(0.2);
+        phase("partial outage", model, calls, concurrency, stream);
+        primary.failureRate(0);
+        primary.stallRate(1);
+        phase("full outage", model, calls, concurrency, stream);
+        primary.stallRate(0);
+        phase("recovery", model, calls, concurrency, stream);
+        System.out.println();
+        System.out.println(AgentMetrics.report());
+    }
+
+    private static void phase(String name, ResilientModel model, int calls, int concurrency, boolean stream) {
+        LlmRequest request = LlmRequest.builder()
+                .model(model.model())
+                .contents(List.of(Content.fromParts(Part.fromText("Why is the sky blue?"))))
+                .build();
+        Histogram latency = new Histogram();
+        AtomicInteger failed = new AtomicInteger();
+        long fallbackBefore = AgentMetrics.count("faults.fallback.calls");
+
+        Flowable.range(0, calls)
+                .flatMap(call -> Flowable.defer(() -> {
+                    long start = System.nanoTime();
+                    return model.generateContent(request, stream)
+                            .ignoreElements()
+                            .doOnError(error -> failed.incrementAndGet())
+                            .onErrorComplete()
+                            .doOnComplete(() -> latency.record(
+                                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)))
+                            .toFlowable();
+                }), concurrency)
+                .blockingSubscribe();
+
+        System.out.printf("%-16s %8d %8d %8d %8d %9d  %s%n", name, latency.percentile(0.5),
+                latency.percentile(0.99), latency.max(), failed.get(),
+                AgentMetrics.count("faults.fallback.calls") - fallbackBefore, model.circuitBreaker().state());
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.agent.bench;
+
+import com.example.agent.metrics.Histogram;
+import com.example.agent.resilience.FaultInjectingModel;
+import com.example.agent.scheduling.FairModelScheduler;
+import com.example.agent.scheduling.FairModelScheduler.Priority;
+import com.example.agent.scheduling.ScheduledModel;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.LlmRequest;
+import com.google.genai.types.Content;
+import com.google.genai.types.Part;
+import io.reactivex.rxjava3.core.Completable;
+import io.reactivex.rxjava3.core.Flowable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of interactive model calls under batch load, with a single FIFO queue versus {@link FairModelScheduler}.
+ *
+ * A local stand-in provider ({@link FaultInjectingModel}, no faults) serves a burst of batch calls from two
+ * pipelines, a research job and a refinement loop. Meanwhile interactive users make one call at a time with a
+ * short pause between calls. For each mode the benchmark prints the end-to-end latency percentiles of the
+ * interactive and batch calls and the total time.
+ * Usage: {@code FairSchedulingBenchmark [slots=8] [batchCalls=400] [users=4] [userCalls=25]}.
+ */
+public class FairSchedulingBenchmark {
+
+    private static final Duration PROVIDER_LATENCY = Duration.ofMillis(100);
+    private static final Duration THINK_TIME = Duration.ofMillis(50);
+
+    public static void main(String[] args) {
+        int slots = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int batchCalls = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+        int users = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int userCalls = args.length > 3 ? Integer.parseInt(args[3]) : 25;
+
+        BaseLlm provider = FaultInjectingModel.builder("provider").latency(PROVIDER_LATENCY).build();
+
+        // One queue for everyone: calls are served in arrival order
+        FairModelScheduler fifo = FairModelScheduler.builder("fifo")
+                .maxConcurrency(slots)
+                .reservedForInteractive(0)
+                .tenantConcurrency(slots)
+                .build();
+        run("fifo", provider, users, userCalls, batchCalls,
+                (tenant, priority) -> new ScheduledModel(provider, fifo, "all", Priority.INTERACTIVE));
+
+        FairModelScheduler fair = FairModelScheduler.builder("fair")
+                .maxConcurrency(slots)
+                .reservedForInteractive(Math.max(1, slots / 4))
+                .tenantConcurrency(Math.max(1, slots / 2))
+                .build();
+        run("fair", provider, users, userCalls, batchCalls,
+                (tenant, priority) -> new ScheduledModel(provider, fair, tenant, priority));
+    }
+
+    private interface ModelFactory {
+        BaseLlm model(String tenant, Priority priority);
+    }
+
+    private static void run(String mode, BaseLlm provider, int users, int userCalls, int batchCalls,
+            ModelFactory models) {
+        LlmRequest request = LlmRequest.builder()
+                .model(provider.model())
+                .contents(List.of(Content.fromParts(Part.fromText("What is the weather in Paris?"))))
+                .build();
+        Histogram interactive = new Histogram();
+        Histogram batch = new Histogram();
+        List<Completable> load = new ArrayList<>();
+
+        BaseLlm research = models.model("ParallelResearchPipeline", Priority.BATCH);
+        BaseLlm loop = models.model("LoopingIterativeWritingPipeline", Priority.BATCH);
+        for (int i = 0; i < batchCalls; i++) {
+            load.add(timed(i % 3 == 0 ? loop : research, request, batch));
+        }
+        for (int user = 0; user < users; user++) {
+            BaseLlm model = models.model("WeatherAgent-" + user, Priority.INTERACTIVE);
+            // Users start once the batch burst is queued and then call one after another
+            load.add(Flowable.range(0, userCalls)
+                    .concatMapCompletable(call -> Completable.timer(THINK_TIME.toMillis(), TimeUnit.MILLISECONDS)
+                            .andThen(timed(model, request, interactive))));
+        }
+
+        long start = System.nanoTime();
+        Completable.merge(load).blockingAwait();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%-5s interactive p50 %5d ms  p99 %5d ms  |  batch p50 %6d ms  p99 %6d ms  |  %.1f s%n",
+                mode, interactive.percentile(0.5), interactive.percentile(0.99), batch.percentile(0.5),
+                batch.percentile(0.99), seconds);
+    }
+
+    private static Completable timed(BaseLlm model, LlmRequest request, Histogram latency) {
+        return Completable.defer(() -> {
+            long start = System.nanoTime();
+            return model.generateContent(request, false)
+                    .ignoreElements()
+                    .doOnComplete(() -> latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+        });
+    }
+}
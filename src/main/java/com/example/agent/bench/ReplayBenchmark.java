@@ -0,0 +1,96 @@
+package com.example.agent.bench;
+
+import com.example.agent.LoopAgentExample;
+import com.example.agent.ParallelResearchPipeline;
+import com.example.agent.metrics.Histogram;
+import com.example.agent.replay.Cassettes;
+import com.google.adk.agents.BaseAgent;
+import com.google.adk.runner.InMemoryRunner;
+import com.google.adk.sessions.Session;
+import com.google.genai.types.Content;
+import com.google.genai.types.Part;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a recorded cassette through the real runner and agents to catch latency and allocation
+ * regressions in our own code, without network access.
+ *
+ * Record once with {@code ADK_CASSETTE_MODE=record ADK_CASSETTE_FILE=parallel.cassette} while running
+ * {@code ParallelResearchPipeline} (or {@code LoopAgentExample}), then in CI:
+ * <pre>
+ * ReplayBenchmark pipeline=parallel cassette=parallel.cassette iterations=50 playback=instant \
+ *     maxP50Ms=40 maxAllocMb=60
+ * </pre>
+ * The process exits with status 1 when a budget is exceeded. With {@code playback=instant} the measured
+ * time is the runner and agent glue only; use {@code original} or a factor to include provider timing.
+ */
+public class ReplayBenchmark {
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>(Map.of(
+                "pipeline", "parallel",
+                "cassette", "agent-run.cassette",
+                "iterations", "20",
+                "warmup", "3",
+                "playback", "instant"));
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        System.setProperty("adk.cassette.mode", "replay");
+        System.setProperty("adk.cassette.file", options.get("cassette"));
+        System.setProperty("adk.cassette.playback", options.get("playback"));
+
+        boolean loop = options.get("pipeline").equals("loop");
+        String appName = loop ? "LoopingIterativeWritingPipeline" : "ParallelResearchPipeline";
+        String prompt = options.getOrDefault("prompt", loop
+                ? "Write a document about the Formula 1 race in Montreal."
+                : "Summarize recent sustainable tech advancements.");
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int iterations = Integer.parseInt(options.get("iterations"));
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Histogram latencyMicros = new Histogram();
+        Histogram allocatedKb = new Histogram();
+
+        for (int i = 0; i < warmup + iterations; i++) {
+            Cassettes.reload();
+            BaseAgent agent = loop ? LoopAgentExample.initAgent() : ParallelResearchPipeline.initAgent();
+            InMemoryRunner runner = new InMemoryRunner(agent, appName);
+            Session session = runner.sessionService().createSession(appName, "replay_user").blockingGet();
+
+            long allocatedBefore = threads.getTotalThreadAllocatedBytes();
+            long start = System.nanoTime();
+            runner.runAsync("replay_user", session.id(), Content.fromParts(Part.fromText(prompt)))
+                    .blockingForEach(event -> {});
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            long allocated = threads.getTotalThreadAllocatedBytes() - allocatedBefore;
+
+            if (i >= warmup) {
+                latencyMicros.record(micros);
+                allocatedKb.record(allocated >> 10);
+            }
+        }
+
+        System.out.printf("Replayed %s %d times (playback=%s)%n", appName, iterations, options.get("playback"));
+        System.out.printf("  run latency us: %s%n", latencyMicros.snapshot());
+        System.out.printf("  allocated KB per run: %s%n", allocatedKb.snapshot());
+
+        boolean failed = false;
+        if (options.containsKey("maxP50Ms")
+                && latencyMicros.percentile(0.5) > Long.parseLong(options.get("maxP50Ms")) * 1000) {
+            System.out.printf("FAIL: p50 latency above %s ms%n", options.get("maxP50Ms"));
+            failed = true;
+        }
+        if (options.containsKey("maxAllocMb")
+                && allocatedKb.percentile(0.5) > Long.parseLong(options.get("maxAllocMb")) * 1024) {
+            System.out.printf("FAIL: median allocation above %s MB%n", options.get("maxAllocMb"));
+            failed = true;
+        }
+        System.exit(failed ? 1 : 0);
+    }
+}
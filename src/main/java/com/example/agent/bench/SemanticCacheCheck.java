@@ -0,0 +1,48 @@
+package com.example.agent.bench;
+
+import com.example.agent.ScienceTeacherAgent;
+import com.example.agent.cache.SemanticCache;
+import java.util.List;
+
+/**
+ * Checks that the science teacher's answer cache matches paraphrases of a question and nothing else.
+ *
+ * For each pair the first prompt is cached and the second one looked up, in a cache with the agent's threshold.
+ * The check prints each pair with its outcome and exits with status 1 when an outcome is not the expected one,
+ * so a change to the normalization or the threshold cannot silently stop the cache from working.
+ * Usage: {@code SemanticCacheCheck}.
+ */
+public class SemanticCacheCheck {
+
+    private record Pair(String cached, String asked, boolean hit) {}
+
+    private static final List<Pair> PAIRS = List.of(
+            new Pair("Why is the sky blue?", "What makes the sky blue?", true),
+            new Pair("Why is the sky blue?", "Can you explain why the sky is blue?", true),
+            new Pair("Why is the sky blue?", "How come the sky is blue?", true),
+            new Pair("What causes the seasons?", "Why are there seasons?", true),
+            new Pair("Why is the sky blue?", "Why is the ocean blue?", false),
+            new Pair("Why is the sky blue?", "What color is the sky?", false),
+            new Pair("What makes the sky blue?", "What makes grass green?", false),
+            new Pair("Who discovered penicillin?", "When was penicillin discovered?", false));
+
+    public static void main(String[] args) {
+        int failed = 0;
+        for (Pair pair : PAIRS) {
+            SemanticCache<String> cache = SemanticCache.builder("check")
+                    .threshold(ScienceTeacherAgent.ANSWER_CACHE_THRESHOLD)
+                    .build();
+            cache.put(pair.cached(), "answer", 0);
+            boolean hit = cache.lookup(pair.asked()).isPresent();
+            if (hit != pair.hit()) {
+                failed++;
+            }
+            System.out.printf("%-4s %-5s \"%s\" -> \"%s\"%n",
+                    hit == pair.hit() ? "ok" : "FAIL", hit ? "hit" : "miss", pair.cached(), pair.asked());
+        }
+        if (failed > 0) {
+            System.out.println(failed + " of " + PAIRS.size() + " pairs failed");
+            System.exit(1);
+        }
+    }
+}
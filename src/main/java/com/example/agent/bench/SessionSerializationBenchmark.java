@@ -0,0 +1,165 @@
+package com.example.agent.bench;
+
+import com.example.agent.config.JacksonConfig;
+import com.google.adk.events.Event;
+import com.google.genai.types.Content;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.Part;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import tools.jackson.databind.json.JsonMapper;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Throughput and memory of writing a large session's event list as JSON: the library's toJson() strings
+ * assembled in memory, versus the streaming serializers of {@link JacksonConfig} writing to the stream.
+ *
+ * The output goes to a stream that only counts bytes, standing in for the HTTP response. For each mode the
+ * benchmark prints events/s, MB/s, bytes allocated per session and the peak heap usage while writing. It
+ * first checks that the serializers write the same JSON as Jackson's default serialization of the events.
+ * Usage: {@code SessionSerializationBenchmark [events=5000] [rounds=20]}.
+ */
+public class SessionSerializationBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int eventCount = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        List<Event> events = session(eventCount);
+        JsonMapper mapper = JsonMapper.builder().addModule(new JacksonConfig().genaiTypesModule()).build();
+
+        // The serializers must not change the wire format: compare with the default serialization, used before
+        // they were registered (null and absent fields are treated alike)
+        JsonMapper defaults = JsonMapper.builder().build();
+        boolean same = withoutNulls(defaults.readValue(defaults.writeValueAsString(events), Object.class))
+                .equals(withoutNulls(defaults.readValue(mapper.writeValueAsString(events), Object.class)));
+        System.out.println("Same JSON as the default serialization: " + same);
+
+        run("toJson strings", events, rounds, out -> {
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < events.size(); i++) {
+                json.append(i == 0 ? "" : ",").append(events.get(i).toJson());
+            }
+            out.write(json.append(']').toString().getBytes(UTF_8));
+        });
+        run("streaming Jackson 3", events, rounds, out -> mapper.writeValue(out, events));
+    }
+
+    private interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static void run(String mode, List<Event> events, int rounds, Writer writer) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        CountingOutputStream out = new CountingOutputStream();
+        for (int i = 0; i < 3; i++) {
+            writer.write(out); // warm-up
+        }
+
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        long baseline = heapPools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        out.count = 0;
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            writer.write(out);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / rounds;
+        long peak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+
+        System.out.printf("%-20s %,10.0f events/s  %7.1f MB/s  %,8d KB allocated/session  peak heap +%,d KB%n",
+                mode, events.size() * rounds / seconds, (out.count >> 20) / seconds, allocated >> 10,
+                Math.max(0, peak - baseline) >> 10);
+    }
+
+    private static Object withoutNulls(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            map.forEach((key, item) -> {
+                if (item != null) {
+                    copy.put(key, withoutNulls(item));
+                }
+            });
+            return copy;
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(SessionSerializationBenchmark::withoutNulls).toList();
+        }
+        return value;
+    }
+
+    /** A research-style session: user turns, tool calls with sizeable results and long model answers. */
+    private static List<Event> session(int eventCount) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<Event> events = new ArrayList<>(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            Content content = switch (i % 4) {
+                case 0 -> Content.builder().role("user").parts(Part.fromText(words(random, 20))).build();
+                case 1 -> Content.builder().role("model").parts(Part.builder()
+                        .functionCall(FunctionCall.builder()
+                                .id("adk-" + i)
+                                .name("searchCorpus")
+                                .args(Map.of("query", words(random, 5)))
+                                .build())
+                        .build()).build();
+                case 2 -> Content.builder().role("user").parts(Part.builder()
+                        .functionResponse(FunctionResponse.builder()
+                                .id("adk-" + (i - 1))
+                                .name("searchCorpus")
+                                .response(Map.of("status", "success", "results", List.of(
+                                        Map.of("source", "doc-" + random.nextInt(1000), "passage", words(random, 60)),
+                                        Map.of("source", "doc-" + random.nextInt(1000), "passage", words(random, 60)))))
+                                .build())
+                        .build()).build();
+                default -> Content.builder().role("model").parts(Part.fromText(words(random, 150))).build();
+            };
+            events.add(Event.builder()
+                    .id(Event.generateEventId())
+                    .invocationId("e-" + (i / 4))
+                    .author(i % 4 == 0 ? "user" : "EVResearcher")
+                    .content(content)
+                    .timestamp(1_700_000_000_000L + i)
+                    .build());
+        }
+        return events;
+    }
+
+    private static String words(SplittableRandom random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append(Integer.toString(random.nextInt(1, 50_000), 36));
+        }
+        return text.toString();
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.agent.bench;
+
+import com.example.agent.MultiToolAgent;
+import com.example.agent.MultiToolAgentTools;
+import com.google.adk.tools.BaseTool;
+import com.google.adk.tools.FunctionTool;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Creation and call overhead of tools generated by {@code FunctionToolProcessor}, versus the reflective
+ * {@code FunctionTool.create}, on {@code MultiToolAgent}'s two tools.
+ *
+ * For each mode the benchmark prints the time to create the first tools (class loading and reflection included,
+ * as at agent startup), the time per creation once warm, and the time and bytes allocated per call of
+ * {@code getWeather}, whose body is a map lookup so the dispatch dominates. The first-creation time is only
+ * meaningful for the mode that runs first; run each mode in its own JVM to compare startup.
+ * Usage: {@code ToolDispatchBenchmark [mode=both|reflective|generated] [calls=2000000]}.
+ */
+public class ToolDispatchBenchmark {
+
+    private static final Map<String, Object> ARGS = Map.of("city", "Paris");
+
+    public static void main(String[] args) {
+        String mode = args.length > 0 ? args[0] : "both";
+        int calls = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+
+        if (!mode.equals("generated")) {
+            run("reflective", calls, () -> FunctionTool.create(MultiToolAgent.class, "getCurrentTime"),
+                    () -> FunctionTool.create(MultiToolAgent.class, "getWeather"));
+        }
+        if (!mode.equals("reflective")) {
+            run("generated", calls, MultiToolAgentTools::getCurrentTime, MultiToolAgentTools::getWeather);
+        }
+    }
+
+    private static void run(String mode, int calls, Supplier<BaseTool> currentTime, Supplier<BaseTool> weather) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        long start = System.nanoTime();
+        currentTime.get();
+        BaseTool tool = weather.get();
+        double firstMs = (System.nanoTime() - start) / 1e6;
+
+        int creations = 20_000;
+        start = System.nanoTime();
+        for (int i = 0; i < creations; i++) {
+            currentTime.get();
+            weather.get();
+        }
+        double createNs = (double) (System.nanoTime() - start) / (2 * creations);
+
+        long sink = 0;
+        for (int i = 0; i < calls / 10; i++) {
+            sink += tool.runAsync(ARGS, null).blockingGet().size(); // warm-up
+        }
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            sink += tool.runAsync(ARGS, null).blockingGet().size();
+        }
+        double callNs = (double) (System.nanoTime() - start) / calls;
+        long allocated = (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / calls;
+
+        System.out.printf("%-10s first tools %8.2f ms  create %,9.0f ns/tool  call %,7.0f ns  %,5d B/call  (%d)%n",
+                mode, firstMs, createNs, callNs, allocated, sink % 10);
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.agent.cache;
+
+import com.example.agent.metrics.AgentMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Near-duplicate cache keyed by {@link TextFingerprint}s and indexed with MinHash LSH.
+ *
+ * The 64 MinHash values of a fingerprint are split into {@code bands} bands; two prompts become candidates
+ * when any band matches exactly. Candidates are then accepted only if the exact Jaccard similarity of
+ * their shingle sets reaches {@code threshold}. Entries are evicted oldest-first beyond {@code maxEntries}.
+ * Prompts with no words left after normalization are neither looked up nor stored.
+ *
+ * Every hit is written to the {@code com.example.agent.cache.audit} logger with both prompts and their
+ * similarity, so false hits can be reviewed and the threshold tuned.
+ *
+ * Metrics (per cache name): {@code cache.<name>.hit|miss|skipped}, {@code cache.<name>.lookup.latency.us},
+ * {@code cache.<name>.similarity.pct} (similarity of hits) and the gauges {@code cache.<name>.entries}
+ * and {@code cache.<name>.memory.bytes}.
+ */
+public class SemanticCache<V> {
+
+    private static final Logger AUDIT = LoggerFactory.getLogger("com.example.agent.cache.audit");
+
+    /** A cached value together with the prompt that produced it. */
+    public record Hit<V>(String cachedPrompt, V value, double similarity) {}
+
+    private record Entry<V>(long id, String prompt, TextFingerprint fingerprint, V value, long bytes) {}
+
+    private final String name;
+    private final double threshold;
+    private final int bands;
+    private final int rows;
+    private final int shingleSize;
+    private final int maxEntries;
+
+    private final Map<Long, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Map<BandKey, List<Long>> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Long> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong memoryBytes = new AtomicLong();
+
+    private SemanticCache(Builder builder) {
+        this.name = builder.name;
+        this.threshold = builder.threshold;
+        this.bands = builder.bands;
+        this.rows = TextFingerprint.SIGNATURE_SIZE / builder.bands;
+        this.shingleSize = builder.shingleSize;
+        this.maxEntries = builder.maxEntries;
+        AgentMetrics.gauge(metric("entries"), entries::size);
+        AgentMetrics.gauge(metric("memory.bytes"), memoryBytes::get);
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public Optional<Hit<V>> lookup(String prompt) {
+        long start = System.nanoTime();
+        TextFingerprint fingerprint = TextFingerprint.of(prompt, shingleSize);
+        if (fingerprint.isEmpty()) {
+            AgentMetrics.increment(metric("skipped"));
+            return Optional.empty();
+        }
+        Entry<V> best = null;
+        double bestSimilarity = 0;
+        for (int band = 0; band < bands; band++) {
+            List<Long> candidates = buckets.get(bandKey(fingerprint, band));
+            if (candidates == null) {
+                continue;
+            }
+            synchronized (candidates) {
+                for (long id : candidates) {
+                    Entry<V> entry = entries.get(id);
+                    if (entry == null) {
+                        continue;
+                    }
+                    double similarity = fingerprint.similarity(entry.fingerprint());
+                    if (similarity >= threshold && similarity > bestSimilarity) {
+                        best = entry;
+                        bestSimilarity = similarity;
+                    }
+                }
+            }
+        }
+        AgentMetrics.recordSince(metric("lookup.latency.us"), start);
+
+        if (best == null) {
+            AgentMetrics.increment(metric("miss"));
+            return Optional.empty();
+        }
+        AgentMetrics.increment(metric("hit"));
+        AgentMetrics.record(metric("similarity.pct"), Math.round(bestSimilarity * 100));
+        AUDIT.info("cache={} similarity={} prompt=\"{}\" cachedPrompt=\"{}\"",
+                name, String.format("%.2f", bestSimilarity), prompt, best.prompt());
+        return Optional.of(new Hit<>(best.prompt(), best.value(), bestSimilarity));
+    }
+
+    public void put(String prompt, V value, long valueBytes) {
+        TextFingerprint fingerprint = TextFingerprint.of(prompt, shingleSize);
+        if (fingerprint.isEmpty()) {
+            return;
+        }
+        long id = nextId.incrementAndGet();
+        long bytes = fingerprint.estimatedBytes() + 2L * prompt.length() + valueBytes + 64L * bands;
+        entries.put(id, new Entry<>(id, prompt, fingerprint, value, bytes));
+        memoryBytes.addAndGet(bytes);
+        // Buckets are only changed inside compute(), so an eviction cannot drop a bucket that is being added to
+        for (int band = 0; band < bands; band++) {
+            buckets.compute(bandKey(fingerprint, band), (key, bucket) -> {
+                List<Long> updated = bucket == null ? new ArrayList<>() : bucket;
+                synchronized (updated) {
+                    updated.add(id);
+                }
+                return updated;
+            });
+        }
+        insertionOrder.add(id);
+        while (entries.size() > maxEntries) {
+            Long oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            evict(oldest);
+        }
+    }
+
+    private void evict(long id) {
+        Entry<V> entry = entries.remove(id);
+        if (entry == null) {
+            return;
+        }
+        memoryBytes.addAndGet(-entry.bytes());
+        for (int band = 0; band < bands; band++) {
+            buckets.computeIfPresent(bandKey(entry.fingerprint(), band), (key, bucket) -> {
+                synchronized (bucket) {
+                    bucket.remove(Long.valueOf(id));
+                    return bucket.isEmpty() ? null : bucket;
+                }
+            });
+        }
+    }
+
+    private BandKey bandKey(TextFingerprint fingerprint, int band) {
+        long[] signature = fingerprint.signature();
+        long hash = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            hash = hash * 31 + signature[i];
+        }
+        return new BandKey(band, hash);
+    }
+
+    private String metric(String suffix) {
+        return "cache." + name + "." + suffix;
+    }
+
+    private record BandKey(int band, long hash) {}
+
+    public static class Builder {
+        private final String name;
+        private double threshold = 0.7;
+        private int bands = 16;
+        private int shingleSize = 1;
+        private int maxEntries = 10_000;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /** Minimum Jaccard similarity (0..1) of the normalized shingle sets for a hit. */
+        public Builder threshold(double threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        /** Number of LSH bands; must divide 64. More bands find more candidates at lower similarity. */
+        public Builder bands(int bands) {
+            if (TextFingerprint.SIGNATURE_SIZE % bands != 0) {
+                throw new IllegalArgumentException("bands must divide " + TextFingerprint.SIGNATURE_SIZE);
+            }
+            this.bands = bands;
+            return this;
+        }
+
+        /** Number of consecutive normalized words per shingle. */
+        public Builder shingleSize(int shingleSize) {
+            this.shingleSize = shingleSize;
+            return this;
+        }
+
+        public Builder maxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        public <V> SemanticCache<V> build() {
+            return new SemanticCache<>(this);
+        }
+    }
+}
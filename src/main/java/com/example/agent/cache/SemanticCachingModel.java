@@ -0,0 +1,99 @@
+package com.example.agent.cache;
+
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.BaseLlmConnection;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import com.google.genai.types.Content;
+import com.google.genai.types.Part;
+import io.reactivex.rxjava3.core.Flowable;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Model that answers paraphrases of already answered questions from a {@link SemanticCache} instead of
+ * calling the provider.
+ *
+ * Caching is opt-in per agent: wrap the agent's model and give it its own cache, so answers never cross
+ * agents with different instructions. Only requests whose history is at most {@code maxContents} entries
+ * (by default the user's single question) are looked up, since the answer to a follow-up depends on the
+ * conversation. Prompts made only of filler words (e.g. "can you explain?") bypass the cache. Only final,
+ * text-only answers are stored.
+ */
+public class SemanticCachingModel extends BaseLlm {
+
+    private final BaseLlm delegate;
+    private final SemanticCache<LlmResponse> cache;
+    private final int maxContents;
+
+    public SemanticCachingModel(BaseLlm delegate, SemanticCache<LlmResponse> cache) {
+        this(delegate, cache, 1);
+    }
+
+    public SemanticCachingModel(BaseLlm delegate, SemanticCache<LlmResponse> cache, int maxContents) {
+        super(delegate.model());
+        this.delegate = delegate;
+        this.cache = cache;
+        this.maxContents = maxContents;
+    }
+
+    @Override
+    public Flowable<LlmResponse> generateContent(LlmRequest llmRequest, boolean stream) {
+        Optional<String> prompt = cacheablePrompt(llmRequest);
+        if (prompt.isEmpty()) {
+            return delegate.generateContent(llmRequest, stream);
+        }
+        Optional<SemanticCache.Hit<LlmResponse>> hit = cache.lookup(prompt.get());
+        if (hit.isPresent()) {
+            return Flowable.just(hit.get().value());
+        }
+
+        AtomicReference<LlmResponse> answer = new AtomicReference<>();
+        return delegate.generateContent(llmRequest, stream)
+                .doOnNext(response -> {
+                    if (!response.partial().orElse(false) && textOf(response).isPresent()) {
+                        answer.set(response);
+                    }
+                })
+                .doOnComplete(() -> {
+                    LlmResponse response = answer.get();
+                    if (response != null) {
+                        cache.put(prompt.get(), response, 256L + 2L * textOf(response).get().length());
+                    }
+                });
+    }
+
+    @Override
+    public BaseLlmConnection connect(LlmRequest llmRequest) {
+        return delegate.connect(llmRequest);
+    }
+
+    private Optional<String> cacheablePrompt(LlmRequest llmRequest) {
+        List<Content> contents = llmRequest.contents();
+        if (contents.isEmpty() || contents.size() > maxContents) {
+            return Optional.empty();
+        }
+        Content last = contents.get(contents.size() - 1);
+        if (!"user".equals(last.role().orElse("user"))) {
+            return Optional.empty();
+        }
+        String text = last.parts().orElse(List.of()).stream()
+                .map(part -> part.text().orElse(""))
+                .collect(Collectors.joining(" "))
+                .trim();
+        // A prompt without any meaningful word would be similar to every other such prompt
+        return TextFingerprint.normalize(text).length == 0 ? Optional.empty() : Optional.of(text);
+    }
+
+    /** The text of a response that has text and no function calls. */
+    private static Optional<String> textOf(LlmResponse response) {
+        List<Part> parts = response.content().flatMap(Content::parts).orElse(List.of());
+        if (parts.isEmpty() || parts.stream().anyMatch(part -> part.functionCall().isPresent())) {
+            return Optional.empty();
+        }
+        String text = parts.stream().map(part -> part.text().orElse("")).collect(Collectors.joining());
+        return text.isBlank() ? Optional.empty() : Optional.of(text);
+    }
+}
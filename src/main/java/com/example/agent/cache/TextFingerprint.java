@@ -0,0 +1,138 @@
+package com.example.agent.cache;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * MinHash fingerprint of a prompt, computed over normalized word shingles.
+ *
+ * Normalization lower-cases, strips accents and punctuation, drops stop words and question filler ("is",
+ * "makes", "can you explain") and crudely singularizes, so paraphrases of the same question map to the same
+ * shingle set. Question words (who, what, when, where, why, how, which) are kept: they tell apart questions
+ * about the same subject. Phrasings that ask for a cause ("what makes", "what causes", "how come", "what is the
+ * reason for") become "why" first, so "What makes the sky blue?" and "Why is the sky blue?" are the same
+ * question. A text with no words left after normalization has no shingles and is similar to nothing, not even to
+ * another such text; see {@link #isEmpty()}. The sorted shingle hashes are kept to compute the exact Jaccard
+ * similarity of LSH candidates; the MinHash signature is only used to find those candidates.
+ */
+public final class TextFingerprint {
+
+    static final int SIGNATURE_SIZE = 64;
+
+    private static final Set<String> FILLER_WORDS = Set.of(
+            "a", "an", "the", "is", "are", "was", "were", "be", "do", "does", "did", "make", "makes", "cause",
+            "causes", "can", "could", "would", "you", "me", "i", "please", "explain", "tell", "about", "of", "to",
+            "in", "on", "it", "its", "so", "that", "this", "and", "or", "for", "with", "happen", "happens",
+            "there");
+
+    private static final Pattern CAUSE_QUESTION = Pattern.compile(
+            "\\b(what (makes?|made|causes?|caused)|how come|what (is |s )?the reasons? (for|why))\\b");
+
+    private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+
+    private final long[] signature;
+    private final long[] shingles;
+
+    private TextFingerprint(long[] signature, long[] shingles) {
+        this.signature = signature;
+        this.shingles = shingles;
+    }
+
+    /** Fingerprints {@code text} using shingles of {@code shingleSize} consecutive normalized words. */
+    public static TextFingerprint of(String text, int shingleSize) {
+        String[] words = normalize(text);
+        Set<String> shingleSet = new TreeSet<>();
+        if (words.length > 0 && words.length <= shingleSize) {
+            shingleSet.add(String.join(" ", words));
+        } else {
+            for (int i = 0; i + shingleSize <= words.length; i++) {
+                shingleSet.add(String.join(" ", Arrays.copyOfRange(words, i, i + shingleSize)));
+            }
+        }
+
+        long[] shingles = shingleSet.stream().mapToLong(TextFingerprint::hash).sorted().distinct().toArray();
+        long[] signature = new long[SIGNATURE_SIZE];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (long shingle : shingles) {
+            for (int i = 0; i < SIGNATURE_SIZE; i++) {
+                signature[i] = Math.min(signature[i], mix(shingle ^ SEEDS[i]));
+            }
+        }
+        return new TextFingerprint(signature, shingles);
+    }
+
+    /** Whether the text had no words left after normalization, e.g. a prompt of filler words only. */
+    public boolean isEmpty() {
+        return shingles.length == 0;
+    }
+
+    long[] signature() {
+        return signature;
+    }
+
+    /** Exact Jaccard similarity of the two shingle sets. */
+    public double similarity(TextFingerprint other) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < shingles.length && j < other.shingles.length) {
+            int cmp = Long.compare(shingles[i], other.shingles[j]);
+            if (cmp == 0) {
+                common++;
+                i++;
+                j++;
+            } else if (cmp < 0) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = shingles.length + other.shingles.length - common;
+        return union == 0 ? 0 : (double) common / union;
+    }
+
+    /** Approximate heap footprint, used for the cache memory gauge. */
+    long estimatedBytes() {
+        return 16L + 2 * (16L + 8L * SIGNATURE_SIZE) + 8L * shingles.length;
+    }
+
+    static String[] normalize(String text) {
+        String stripped = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase()
+                .replaceAll("[^\\p{L}\\p{N}]+", " ")
+                .trim();
+        stripped = CAUSE_QUESTION.matcher(stripped).replaceAll("why");
+        return Arrays.stream(stripped.split(" "))
+                .filter(word -> !word.isEmpty() && !FILLER_WORDS.contains(word))
+                .map(word -> word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")
+                        ? word.substring(0, word.length() - 1)
+                        : word)
+                .toArray(String[]::new);
+    }
+
+    private static long hash(String shingle) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < shingle.length(); i++) {
+            h = (h ^ shingle.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
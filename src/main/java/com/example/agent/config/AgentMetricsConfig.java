@@ -0,0 +1,29 @@
+package com.example.agent.config;
+
+import com.example.agent.metrics.AgentMetrics;
+import java.util.Map;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Exposes the {@link AgentMetrics} registry on the AdkWebServer at {@code GET /agent-metrics}.
+ */
+@AutoConfiguration
+public class AgentMetricsConfig {
+
+    @Bean
+    public AgentMetricsController agentMetricsController() {
+        return new AgentMetricsController();
+    }
+
+    @RestController
+    public static class AgentMetricsController {
+
+        @GetMapping("/agent-metrics")
+        public Map<String, Object> metrics() {
+            return AgentMetrics.snapshot();
+        }
+    }
+}
@@ -1,16 +1,29 @@
 package com.example.agent.config;
 
 import com.google.genai.types.Content;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionResponse;
+import com.google.genai.types.JsonSerializable;
 import com.google.genai.types.Part;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonGenerator;
 import tools.jackson.core.JsonParser;
 import tools.jackson.core.TreeNode;
 import tools.jackson.databind.DeserializationContext;
 import tools.jackson.databind.JacksonModule;
+import tools.jackson.databind.SerializationContext;
 import tools.jackson.databind.deser.std.StdDeserializer;
 import tools.jackson.databind.module.SimpleModule;
+import tools.jackson.databind.ser.std.StdSerializer;
 
 /**
  * Bridges Jackson 3.x (Spring Boot 4.x) with the google-genai library's Jackson 2.x types.
@@ -19,6 +32,15 @@ import tools.jackson.databind.module.SimpleModule;
  * Jackson 3.x cannot deserialize them directly because it uses a different package hierarchy.
  * This config registers Jackson 3.x deserializers that delegate to the library's own
  * fromJson() factory methods, which use the library's internal Jackson 2.x ObjectMapper.
+ *
+ * In the other direction, Content and Part are written by streaming Jackson 3.x serializers straight to the
+ * generator, so the contents of the dev server's session and event responses are written to the response
+ * stream as they are produced instead of being rendered to strings with toJson() first. ADK's Event keeps its
+ * default serialization, which picks these serializers up for its content. The common part kinds (text,
+ * thoughts, function calls and responses) are written field by field; rarer members such as inline data are
+ * rendered with the library's toJson() and embedded as raw values, and a part with any field not listed here
+ * (e.g. one added by a newer library) is written entirely by toJson(), so no field is ever dropped. Those other
+ * fields are found once, as the accessors of the types, and checked per part without copying it.
  */
 @AutoConfiguration
 public class JacksonConfig {
@@ -28,6 +50,8 @@ public class JacksonConfig {
         SimpleModule module = new SimpleModule("GenaiTypesModule");
         module.addDeserializer(Content.class, new ContentDeserializer());
         module.addDeserializer(Part.class, new PartDeserializer());
+        module.addSerializer(Content.class, new ContentSerializer());
+        module.addSerializer(Part.class, new PartSerializer());
         return module;
     }
 
@@ -54,4 +78,141 @@ public class JacksonConfig {
             return Part.fromJson(node.toString());
         }
     }
+
+    static class ContentSerializer extends StdSerializer<Content> {
+        ContentSerializer() {
+            super(Content.class);
+        }
+
+        @Override
+        public void serialize(Content content, JsonGenerator gen, SerializationContext ctxt) throws JacksonException {
+            gen.writeStartObject();
+            Optional<List<Part>> parts = content.parts();
+            if (parts.isPresent()) {
+                gen.writeName("parts");
+                gen.writeStartArray();
+                for (Part part : parts.get()) {
+                    PartSerializer.write(part, gen, ctxt);
+                }
+                gen.writeEndArray();
+            }
+            writeString(gen, "role", content.role());
+            gen.writeEndObject();
+        }
+    }
+
+    static class PartSerializer extends StdSerializer<Part> {
+        PartSerializer() {
+            super(Part.class);
+        }
+
+        @Override
+        public void serialize(Part part, JsonGenerator gen, SerializationContext ctxt) throws JacksonException {
+            write(part, gen, ctxt);
+        }
+
+        static void write(Part part, JsonGenerator gen, SerializationContext ctxt) throws JacksonException {
+            if (!hasOnlyKnownFields(part)) {
+                gen.writeRawValue(part.toJson());
+                return;
+            }
+            gen.writeStartObject();
+            writeString(gen, "text", part.text());
+            writeBoolean(gen, "thought", part.thought());
+            if (part.thoughtSignature().isPresent()) {
+                gen.writeName("thoughtSignature");
+                gen.writeBinary(part.thoughtSignature().get());
+            }
+            if (part.functionCall().isPresent()) {
+                FunctionCall call = part.functionCall().get();
+                gen.writeName("functionCall");
+                gen.writeStartObject();
+                writeString(gen, "id", call.id());
+                writeString(gen, "name", call.name());
+                writeMap(gen, ctxt, "args", call.args());
+                gen.writeEndObject();
+            }
+            if (part.functionResponse().isPresent()) {
+                FunctionResponse response = part.functionResponse().get();
+                gen.writeName("functionResponse");
+                gen.writeStartObject();
+                writeString(gen, "id", response.id());
+                writeString(gen, "name", response.name());
+                writeMap(gen, ctxt, "response", response.response());
+                gen.writeEndObject();
+            }
+            writeRaw(gen, "inlineData", part.inlineData());
+            writeRaw(gen, "fileData", part.fileData());
+            writeRaw(gen, "executableCode", part.executableCode());
+            writeRaw(gen, "codeExecutionResult", part.codeExecutionResult());
+            writeRaw(gen, "videoMetadata", part.videoMetadata());
+            gen.writeEndObject();
+        }
+
+        // Accessors of fields the serializer does not write, found once; a newer library's fields show up here
+        private static final List<Method> OTHER_PART_FIELDS = otherFields(Part.class, Set.of("text", "thought",
+                "thoughtSignature", "functionCall", "functionResponse", "inlineData", "fileData", "executableCode",
+                "codeExecutionResult", "videoMetadata"));
+        private static final List<Method> OTHER_CALL_FIELDS = otherFields(FunctionCall.class,
+                Set.of("id", "name", "args"));
+        private static final List<Method> OTHER_RESPONSE_FIELDS = otherFields(FunctionResponse.class,
+                Set.of("id", "name", "response"));
+
+        /** Whether the part, its function call and its function response hold only the fields written above. */
+        static boolean hasOnlyKnownFields(Part part) {
+            return allEmpty(part, OTHER_PART_FIELDS)
+                    && part.functionCall().map(call -> allEmpty(call, OTHER_CALL_FIELDS)).orElse(true)
+                    && part.functionResponse().map(response -> allEmpty(response, OTHER_RESPONSE_FIELDS)).orElse(true);
+        }
+
+        /** The public {@code Optional} accessors of {@code type} other than {@code known}. */
+        private static List<Method> otherFields(Class<?> type, Set<String> known) {
+            return Arrays.stream(type.getMethods())
+                    .filter(method -> !Modifier.isStatic(method.getModifiers())
+                            && method.getParameterCount() == 0
+                            && method.getReturnType() == Optional.class
+                            && !known.contains(method.getName()))
+                    .toList();
+        }
+
+        private static boolean allEmpty(Object value, List<Method> accessors) {
+            for (Method accessor : accessors) {
+                try {
+                    if (((Optional<?>) accessor.invoke(value)).isPresent()) {
+                        return false;
+                    }
+                } catch (ReflectiveOperationException e) {
+                    return false; // unreadable: let toJson() write the value
+                }
+            }
+            return true;
+        }
+    }
+
+    private static void writeString(JsonGenerator gen, String name, Optional<String> value) {
+        if (value.isPresent()) {
+            gen.writeStringProperty(name, value.get());
+        }
+    }
+
+    private static void writeBoolean(JsonGenerator gen, String name, Optional<Boolean> value) {
+        if (value.isPresent()) {
+            gen.writeBooleanProperty(name, value.get());
+        }
+    }
+
+    private static void writeMap(JsonGenerator gen, SerializationContext ctxt, String name,
+            Optional<Map<String, Object>> value) {
+        if (value.isPresent()) {
+            gen.writeName(name);
+            ctxt.writeValue(gen, value.get());
+        }
+    }
+
+    private static void writeRaw(JsonGenerator gen, String name, Optional<? extends JsonSerializable> value) {
+        if (value.isPresent()) {
+            gen.writeName(name);
+            gen.writeRawValue(value.get().toJson());
+        }
+    }
 }
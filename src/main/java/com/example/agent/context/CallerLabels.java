@@ -0,0 +1,91 @@
+package com.example.agent.context;
+
+import com.google.adk.agents.CallbackContext;
+import com.google.adk.agents.Callbacks;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.LlmRequest;
+import com.google.genai.types.GenerateContentConfig;
+import io.reactivex.rxjava3.core.Maybe;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Tells model decorators which session, user, invocation and agent a model call belongs to.
+ *
+ * ADK gives a model only the {@link LlmRequest}, and one model instance serves every session of its agent, so
+ * decorators that keep state per session or per user cannot tell their callers apart. The
+ * {@link #beforeModelCallback()} of the agent writes the caller into labels of the request's config, where
+ * decorators read it with {@link #caller(LlmRequest)}.
+ *
+ * The Gemini API rejects requests with labels, and labels would change the fingerprints of recorded calls, so
+ * they must not get past the decorators: decorators that read them implement {@link Reader} and call their
+ * delegate with the request returned by {@link #forward(BaseLlm, LlmRequest)}, which keeps the labels only for
+ * another {@link Reader}. Install the callback only on agents whose model is a {@link Reader}.
+ */
+public final class CallerLabels {
+
+    private static final String SESSION_ID = "adk-session-id";
+    private static final String USER_ID = "adk-user-id";
+    private static final String INVOCATION_ID = "adk-invocation-id";
+    private static final String AGENT_NAME = "adk-agent-name";
+    private static final Set<String> KEYS = Set.of(SESSION_ID, USER_ID, INVOCATION_ID, AGENT_NAME);
+
+    /** A model decorator that reads the caller labels; it receives them from other decorators. */
+    public interface Reader {}
+
+    /** The caller of one model call. */
+    public record Caller(String sessionId, String userId, String invocationId, String agentName) {}
+
+    private CallerLabels() {}
+
+    /** Labels each model call of the agent with its caller. */
+    public static Callbacks.BeforeModelCallback beforeModelCallback() {
+        return (callbackContext, llmRequest) -> {
+            label(callbackContext, llmRequest);
+            return Maybe.empty();
+        };
+    }
+
+    /** The caller of the call, if its agent labels its calls. */
+    public static Optional<Caller> caller(LlmRequest llmRequest) {
+        Map<String, String> labels = llmRequest.config().flatMap(GenerateContentConfig::labels).orElse(Map.of());
+        if (!labels.containsKey(INVOCATION_ID)) {
+            return Optional.empty();
+        }
+        return Optional.of(new Caller(labels.get(SESSION_ID), labels.get(USER_ID), labels.get(INVOCATION_ID),
+                labels.get(AGENT_NAME)));
+    }
+
+    /** The request to pass to {@code delegate}: with the caller labels for a {@link Reader}, without otherwise. */
+    public static LlmRequest forward(BaseLlm delegate, LlmRequest llmRequest) {
+        if (delegate instanceof Reader) {
+            return llmRequest;
+        }
+        Optional<GenerateContentConfig> config = llmRequest.config();
+        if (config.isEmpty() || !config.get().labels().orElse(Map.of()).containsKey(INVOCATION_ID)) {
+            return llmRequest;
+        }
+        Map<String, String> labels = new HashMap<>(config.get().labels().get());
+        labels.keySet().removeAll(KEYS);
+        GenerateContentConfig.Builder stripped = config.get().toBuilder();
+        if (labels.isEmpty()) {
+            stripped.clearLabels();
+        } else {
+            stripped.labels(labels);
+        }
+        return llmRequest.toBuilder().config(stripped.build()).build();
+    }
+
+    private static void label(CallbackContext callbackContext, LlmRequest.Builder llmRequest) {
+        GenerateContentConfig config = llmRequest.build().config()
+                .orElseGet(() -> GenerateContentConfig.builder().build());
+        Map<String, String> labels = new HashMap<>(config.labels().orElse(Map.of()));
+        labels.put(SESSION_ID, callbackContext.sessionId());
+        labels.put(USER_ID, callbackContext.userId());
+        labels.put(INVOCATION_ID, callbackContext.invocationId());
+        labels.put(AGENT_NAME, callbackContext.agentName());
+        llmRequest.config(config.toBuilder().labels(labels).build());
+    }
+}
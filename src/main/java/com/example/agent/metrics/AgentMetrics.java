@@ -0,0 +1,70 @@
+package com.example.agent.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Process-wide registry of the counters, gauges and histograms recorded by the sample agents.
+ *
+ * Metric names are dot-separated; latency histograms end in {@code .latency.us} and hold microseconds.
+ * The registry is exposed over HTTP by {@link com.example.agent.config.AgentMetricsConfig} and can be
+ * printed from the {@code main} methods of the examples with {@link #report()}.
+ */
+public final class AgentMetrics {
+
+    private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, LongSupplier> GAUGES = new ConcurrentSkipListMap<>();
+    private static final ConcurrentMap<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    private AgentMetrics() {}
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long delta) {
+        COUNTERS.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public static long count(String name) {
+        LongAdder counter = COUNTERS.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /** Registers a value read on every snapshot; a later registration under the same name replaces it. */
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    public static Histogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    public static void record(String name, long value) {
+        histogram(name).record(value);
+    }
+
+    /** Records the time elapsed since {@code startNanos} (from {@link System#nanoTime()}) in microseconds. */
+    public static void recordSince(String name, long startNanos) {
+        histogram(name).record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        COUNTERS.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        GAUGES.forEach((name, gauge) -> snapshot.put(name, gauge.getAsLong()));
+        HISTOGRAMS.forEach((name, histogram) -> snapshot.put(name, histogram.snapshot()));
+        return snapshot;
+    }
+
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        snapshot().forEach((name, value) -> report.append(name).append(" = ").append(value).append('\n'));
+        return report.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.agent.metrics;
+
+import com.example.agent.context.CallerLabels;
+import com.google.adk.agents.Callbacks;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.BaseLlmConnection;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.core.Maybe;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Model that records the token usage and latency of each run of its agent, under a name chosen by the caller
+ * (e.g. an agent and a variant being compared).
+ *
+ * One run of an agent, such as one iteration of a refiner inside a loop, may take several model calls: a tool
+ * call and the answer after it, or a rejected edit and its retry. Their usage is summed until the run ends,
+ * which the model learns from {@link #afterAgentCallback()}; the latency of a run goes from the start of its
+ * first call to its end, tool calls included. The agent must label its calls with
+ * {@link CallerLabels#beforeModelCallback()}; unlabeled calls are recorded as runs of one call. A run whose call
+ * fails or is cancelled is dropped. The usage of a call is the last one it reported, which for streaming calls
+ * covers the whole stream.
+ *
+ * Metrics ({@code usage.<name>.}): {@code latency.us}, {@code input.tokens}, {@code output.tokens} and
+ * {@code run.calls} (histograms per run), and the counters {@code runs}, {@code calls} and {@code run.dropped}.
+ */
+public class UsageMeteringModel extends BaseLlm implements CallerLabels.Reader {
+
+    private record RunKey(String invocationId, String agentName) {}
+
+    /** The usage of the calls of one run so far. */
+    private static final class Run {
+        final long startNanos = System.nanoTime();
+        int calls;
+        long inputTokens = -1;
+        long outputTokens = -1;
+
+        synchronized void add(GenerateContentResponseUsageMetadata usage) {
+            calls++;
+            if (usage != null) {
+                usage.promptTokenCount().ifPresent(tokens -> inputTokens = Math.max(inputTokens, 0) + tokens);
+                usage.candidatesTokenCount().ifPresent(tokens -> outputTokens = Math.max(outputTokens, 0) + tokens);
+            }
+        }
+    }
+
+    private final String name;
+    private final BaseLlm delegate;
+    private final ConcurrentMap<RunKey, Run> runs = new ConcurrentHashMap<>();
+
+    public UsageMeteringModel(String name, BaseLlm delegate) {
+        super(delegate.model());
+        this.name = name;
+        this.delegate = delegate;
+    }
+
+    /**
+     * Ends the run of the agent the callback belongs to and records its usage. Install it on the agent using this
+     * model, and on a loop around that agent if an iteration can exit the loop: the loop then stops the agent
+     * before its own callback runs, and the loop's callback ends every run of the invocation instead.
+     */
+    public Callbacks.AfterAgentCallback afterAgentCallback() {
+        return callbackContext -> {
+            RunKey own = new RunKey(callbackContext.invocationId(), callbackContext.agentName());
+            Run run = runs.remove(own);
+            if (run != null) {
+                record(run);
+            } else {
+                for (RunKey key : runs.keySet()) {
+                    if (key.invocationId().equals(callbackContext.invocationId()) && (run = runs.remove(key)) != null) {
+                        record(run);
+                    }
+                }
+            }
+            return Maybe.empty();
+        };
+    }
+
+    @Override
+    public Flowable<LlmResponse> generateContent(LlmRequest llmRequest, boolean stream) {
+        return Flowable.defer(() -> {
+            RunKey key = CallerLabels.caller(llmRequest)
+                    .map(caller -> new RunKey(caller.invocationId(), caller.agentName()))
+                    .orElse(null);
+            Run run = key == null ? new Run() : runs.computeIfAbsent(key, k -> new Run());
+            AtomicReference<GenerateContentResponseUsageMetadata> usage = new AtomicReference<>();
+            return delegate.generateContent(CallerLabels.forward(delegate, llmRequest), stream)
+                    .doOnNext(response -> response.usageMetadata().ifPresent(usage::set))
+                    .doOnComplete(() -> {
+                        AgentMetrics.increment(metric("calls"));
+                        run.add(usage.get());
+                        if (key == null) {
+                            record(run);
+                        }
+                    })
+                    .doOnError(error -> drop(key, run))
+                    .doOnCancel(() -> drop(key, run));
+        });
+    }
+
+    @Override
+    public BaseLlmConnection connect(LlmRequest llmRequest) {
+        return delegate.connect(CallerLabels.forward(delegate, llmRequest));
+    }
+
+    private void record(Run run) {
+        AgentMetrics.increment(metric("runs"));
+        AgentMetrics.recordSince(metric("latency.us"), run.startNanos);
+        synchronized (run) {
+            AgentMetrics.record(metric("run.calls"), run.calls);
+            if (run.inputTokens >= 0) {
+                AgentMetrics.record(metric("input.tokens"), run.inputTokens);
+            }
+            if (run.outputTokens >= 0) {
+                AgentMetrics.record(metric("output.tokens"), run.outputTokens);
+            }
+        }
+    }
+
+    private void drop(RunKey key, Run run) {
+        if (key != null && runs.remove(key, run)) {
+            AgentMetrics.increment(metric("run.dropped"));
+        }
+    }
+
+    private String metric(String suffix) {
+        return "usage." + name + "." + suffix;
+    }
+}
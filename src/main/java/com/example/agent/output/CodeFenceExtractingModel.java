@@ -0,0 +1,252 @@
+package com.example.agent.output;
+
+import com.example.agent.metrics.AgentMetrics;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.BaseLlmConnection;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import com.google.genai.types.Content;
+import com.google.genai.types.GenerateContentResponseUsageMetadata;
+import com.google.genai.types.Part;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.disposables.Disposable;
+import io.reactivex.rxjava3.processors.FlowableProcessor;
+import io.reactivex.rxjava3.processors.UnicastProcessor;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Model for agents told to answer with a single fenced code block: it streams the underlying model's answer,
+ * ends the answer as soon as the block's closing fence arrives and cancels the rest of the stream.
+ *
+ * The underlying model is always called in streaming mode and its text is fed to a {@link CodeFenceParser}.
+ * Once the block is complete, the final response (and so the agent's {@code outputKey}) is the block alone,
+ * without the prose models tend to add after it, and the next agent can start without waiting for that prose.
+ * With {@code stream} requested the partial responses are passed on, cut at the closing fence. Answers without
+ * a complete block, and requests that declare tools, are passed through unchanged. The stream is cancelled from
+ * within the call chain, as soon as the response that closes the fence is emitted, so this also works for models
+ * that emit their whole stream while being subscribed to.
+ *
+ * Metrics ({@code codefence.<name>.}): {@code extracted} and {@code passthrough} count the calls,
+ * {@code fence.latency.us} is the time to the closing fence. What the cancellation saves can only be measured
+ * by not cancelling: for a {@code shadowSampleRate} fraction of the calls the rest of the stream is consumed in
+ * the background, and {@code saved.latency.us} and {@code saved.tokens} record the time and output tokens that
+ * came after the fence.
+ */
+public class CodeFenceExtractingModel extends BaseLlm {
+
+    // Rough size of an output token, used when the provider reports no usage for the cancelled stream
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final String name;
+    private final BaseLlm delegate;
+    private final double shadowSampleRate;
+
+    public CodeFenceExtractingModel(String name, BaseLlm delegate) {
+        this(name, delegate, 0);
+    }
+
+    public CodeFenceExtractingModel(String name, BaseLlm delegate, double shadowSampleRate) {
+        super(delegate.model());
+        this.name = name;
+        this.delegate = delegate;
+        this.shadowSampleRate = shadowSampleRate;
+    }
+
+    @Override
+    public Flowable<LlmResponse> generateContent(LlmRequest llmRequest, boolean stream) {
+        if (!llmRequest.tools().isEmpty()) {
+            AgentMetrics.increment(metric("passthrough"));
+            return delegate.generateContent(llmRequest, stream);
+        }
+        return Flowable.defer(() -> {
+            Flowable<LlmResponse> upstream = delegate.generateContent(llmRequest, true);
+            if (ThreadLocalRandom.current().nextDouble() < shadowSampleRate) {
+                return new Extraction(stream, true).shadowed(upstream);
+            }
+            Extraction extraction = new Extraction(stream, false);
+            // takeUntil cancels the upstream from inside its onNext, which stops even a synchronous stream
+            return upstream.concatMapIterable(extraction::onResponse)
+                    .concatWith(Flowable.defer(() -> Flowable.fromIterable(extraction.onComplete())))
+                    .takeUntil(extraction::isLast);
+        });
+    }
+
+    @Override
+    public BaseLlmConnection connect(LlmRequest llmRequest) {
+        return delegate.connect(llmRequest);
+    }
+
+    private String metric(String suffix) {
+        return "codefence." + name + "." + suffix;
+    }
+
+    /**
+     * One call: turns the stream into the responses to pass on, the last of which ends the call. Upstream
+     * callbacks are serialized, so the state needs no locking.
+     */
+    private class Extraction {
+        private final boolean stream;
+        private final boolean shadowing;
+        private final long startNanos = System.nanoTime();
+        private final CodeFenceParser parser = new CodeFenceParser();
+        private GenerateContentResponseUsageMetadata usage;
+        private LlmResponse aggregate;
+        private volatile LlmResponse last;
+        private boolean sawPartial;
+        private long fenceNanos;
+        private int blockTokens;
+
+        Extraction(boolean stream, boolean shadowing) {
+            this.stream = stream;
+            this.shadowing = shadowing;
+        }
+
+        /**
+         * Consumes the whole stream in the background: the call still ends at the closing fence, and the rest of
+         * the stream is only counted, to record what the cancellation saves.
+         */
+        Flowable<LlmResponse> shadowed(Flowable<LlmResponse> upstream) {
+            FlowableProcessor<LlmResponse> responses = UnicastProcessor.<LlmResponse>create().toSerialized();
+            Disposable subscription = upstream.subscribeOn(Schedulers.io()).subscribe(
+                    response -> emit(responses, onResponse(response)),
+                    error -> {
+                        if (last == null) {
+                            responses.onError(error);
+                        }
+                    },
+                    () -> {
+                        if (last == null) {
+                            emit(responses, onComplete());
+                        } else if (fenceNanos != 0) {
+                            recordSavings();
+                        }
+                    });
+            return responses.doOnCancel(() -> {
+                if (last == null) {
+                    subscription.dispose();
+                }
+            });
+        }
+
+        boolean isLast(LlmResponse response) {
+            return response == last;
+        }
+
+        List<LlmResponse> onResponse(LlmResponse response) {
+            response.usageMetadata().ifPresent(metadata -> usage = metadata);
+            boolean partial = response.partial().orElse(false);
+            sawPartial |= partial;
+            // A streaming model ends with an aggregate of its partial responses; only feed each text once
+            if (!partial && sawPartial) {
+                aggregate = response;
+                return List.of();
+            }
+            if (last != null) {
+                if (shadowing) {
+                    // Only counted, for the saved.tokens estimate when the provider reports no usage
+                    parser.feed(text(response));
+                }
+                return List.of();
+            }
+            if (response.errorCode().isPresent() || response.errorMessage().isPresent()) {
+                AgentMetrics.increment(metric("passthrough"));
+                return List.of(end(response));
+            }
+            String text = text(response);
+            int before = parser.length();
+            boolean complete = parser.feed(text);
+            List<LlmResponse> responses = new ArrayList<>(2);
+            if (stream && partial) {
+                if (!complete) {
+                    responses.add(response);
+                } else if (text.length() > parser.trailingLength()) {
+                    responses.add(textResponse(text.substring(0, text.length() - parser.trailingLength()), true));
+                }
+            }
+            if (complete) {
+                responses.add(extracted(before + text.length() - parser.trailingLength()));
+            } else if (!partial) {
+                // The single response of a model that does not stream
+                aggregate = response;
+            }
+            return responses;
+        }
+
+        List<LlmResponse> onComplete() {
+            if (last != null) {
+                return List.of();
+            }
+            if (parser.finish()) {
+                return List.of(extracted(parser.length()));
+            }
+            // No complete block: the answer is passed through as the model gave it
+            AgentMetrics.increment(metric("passthrough"));
+            return List.of(end(aggregate != null ? aggregate : textResponse(parser.text(), false)));
+        }
+
+        private void emit(FlowableProcessor<LlmResponse> responses, List<LlmResponse> emitted) {
+            for (LlmResponse response : emitted) {
+                responses.onNext(response);
+                if (response == last) {
+                    responses.onComplete();
+                }
+            }
+        }
+
+        private LlmResponse end(LlmResponse response) {
+            last = response;
+            return response;
+        }
+
+        private LlmResponse extracted(int blockEndChars) {
+            fenceNanos = System.nanoTime();
+            blockTokens = usage != null && usage.candidatesTokenCount().isPresent()
+                    ? usage.candidatesTokenCount().get()
+                    : blockEndChars / CHARS_PER_TOKEN;
+            AgentMetrics.increment(metric("extracted"));
+            AgentMetrics.recordSince(metric("fence.latency.us"), startNanos);
+            return end(textResponse(parser.block().orElseThrow(), false));
+        }
+
+        private void recordSavings() {
+            AgentMetrics.record(metric("saved.latency.us"),
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - fenceNanos));
+            int totalTokens = usage != null && usage.candidatesTokenCount().isPresent()
+                    ? usage.candidatesTokenCount().get()
+                    : parser.length() / CHARS_PER_TOKEN;
+            AgentMetrics.record(metric("saved.tokens"), Math.max(0, totalTokens - blockTokens));
+        }
+
+        private LlmResponse textResponse(String text, boolean partial) {
+            LlmResponse.Builder builder = LlmResponse.builder()
+                    .content(Content.builder().role("model").parts(Part.fromText(text)).build())
+                    .partial(partial);
+            if (!partial) {
+                builder.turnComplete(true);
+                if (usage != null) {
+                    builder.usageMetadata(usage);
+                }
+            }
+            return builder.build();
+        }
+
+        private static String text(LlmResponse response) {
+            return response.content()
+                    .flatMap(Content::parts)
+                    .map(parts -> {
+                        StringBuilder text = new StringBuilder();
+                        for (Part part : parts) {
+                            if (!part.thought().orElse(false)) {
+                                part.text().ifPresent(text::append);
+                            }
+                        }
+                        return text.toString();
+                    })
+                    .orElse("");
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.agent.output;
+
+import java.util.Optional;
+
+/**
+ * Incremental parser for the first fenced code block (CommonMark style, backticks or tildes) in streamed text.
+ *
+ * Text is fed in arbitrary chunks; lines are examined as soon as they are complete, so the block is known the
+ * moment its closing fence line ends. A fence may be indented by up to three spaces; the closing fence must use
+ * the same character as the opening one, at least as many times, and nothing else on its line.
+ */
+public final class CodeFenceParser {
+
+    private final StringBuilder text = new StringBuilder();
+    private int scanned;
+    private int blockStart = -1;
+    private int blockEnd = -1;
+    private char fenceChar;
+    private int fenceLength;
+
+    /** Adds streamed text and returns whether the first block is now complete. */
+    public boolean feed(String chunk) {
+        text.append(chunk);
+        if (blockEnd >= 0) {
+            return true;
+        }
+        int newline;
+        while (blockEnd < 0 && (newline = text.indexOf("\n", scanned)) >= 0) {
+            line(scanned, newline);
+            scanned = newline + 1;
+        }
+        return blockEnd >= 0;
+    }
+
+    /** Ends the stream: a closing fence on the last, unterminated line also completes the block. */
+    public boolean finish() {
+        if (blockEnd < 0 && scanned < text.length()) {
+            line(scanned, text.length());
+            scanned = text.length();
+        }
+        return blockEnd >= 0;
+    }
+
+    /** The complete block including its fence lines, once the closing fence has been seen. */
+    public Optional<String> block() {
+        return blockEnd < 0 ? Optional.empty() : Optional.of(text.substring(blockStart, blockEnd));
+    }
+
+    /** The number of characters fed after the end of the block, e.g. trailing prose. */
+    public int trailingLength() {
+        return blockEnd < 0 ? 0 : text.length() - blockEnd;
+    }
+
+    /** The number of characters fed so far. */
+    public int length() {
+        return text.length();
+    }
+
+    /** Everything fed so far. */
+    public String text() {
+        return text.toString();
+    }
+
+    /** Whether an opening fence has been seen. */
+    public boolean inBlock() {
+        return blockStart >= 0;
+    }
+
+    private void line(int start, int end) {
+        int indent = 0;
+        while (indent < 3 && start + indent < end && text.charAt(start + indent) == ' ') {
+            indent++;
+        }
+        int fenceStart = start + indent;
+        if (fenceStart >= end || (text.charAt(fenceStart) != '`' && text.charAt(fenceStart) != '~')) {
+            return;
+        }
+        char c = text.charAt(fenceStart);
+        int run = 0;
+        while (fenceStart + run < end && text.charAt(fenceStart + run) == c) {
+            run++;
+        }
+        if (run < 3) {
+            return;
+        }
+        if (blockStart < 0) {
+            blockStart = start;
+            fenceChar = c;
+            fenceLength = run;
+        } else if (c == fenceChar && run >= fenceLength
+                && text.substring(fenceStart + run, end).isBlank()) {
+            blockEnd = end;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.agent.refinement;
+
+import com.example.agent.metrics.AgentMetrics;
+import com.example.agent.refinement.DocumentEdits.Edit;
+import com.example.agent.refinement.DocumentEdits.Op;
+import com.google.adk.tools.Annotations.Schema;
+import com.google.adk.tools.ToolContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Tools that let a refiner change the document in session state with small edits instead of writing it out again.
+ *
+ * {@code applyDocumentEdits} validates a JSON array of edits with {@link DocumentEdits} and applies them to
+ * {@link #DOCUMENT_KEY}; when they do not apply, the document is left unchanged and the model is told to send
+ * the whole document to {@code replaceDocument} instead. Both tools end the refiner's turn on success, so no
+ * further model call follows the edit.
+ *
+ * Metrics: {@code refinement.patch.applied}, {@code refinement.patch.rejected}, {@code refinement.patch.edits}
+ * (edits per patch) and {@code refinement.rewrite}.
+ */
+public class DocumentEditing {
+
+    public static final String DOCUMENT_KEY = "current_document";
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    @Schema(description = "Apply edits to the current document. All edits are validated first; if one does not"
+            + " apply, none is applied and an error explains why.")
+    public static Map<String, Object> applyDocumentEdits(
+            @Schema(name = "edits", description = "JSON array of edits, each one of"
+                    + " {\"op\": \"replace\", \"find\": \"<exact text>\", \"text\": \"<new text>\"},"
+                    + " {\"op\": \"insert\", \"after\": \"<exact text, or empty for the start>\", \"text\": \"<new text>\"},"
+                    + " {\"op\": \"delete\", \"find\": \"<exact text>\"}")
+            String edits,
+            @Schema(name = "toolContext") ToolContext toolContext) {
+        String document = String.valueOf(toolContext.state().getOrDefault(DOCUMENT_KEY, ""));
+        String updated;
+        List<Edit> parsed;
+        try {
+            parsed = parse(edits);
+            updated = DocumentEdits.apply(document, parsed);
+        } catch (IllegalArgumentException | JacksonException e) {
+            AgentMetrics.increment("refinement.patch.rejected");
+            return Map.of(
+                    "status", "error",
+                    "report", e.getMessage() + ". The document is unchanged. Call replaceDocument with the complete"
+                            + " refined document instead.");
+        }
+        toolContext.state().put(DOCUMENT_KEY, updated);
+        toolContext.actions().setSkipSummarization(true);
+        AgentMetrics.increment("refinement.patch.applied");
+        AgentMetrics.record("refinement.patch.edits", parsed.size());
+        return Map.of("status", "success", "report", parsed.size() + " edits applied.");
+    }
+
+    @Schema(description = "Replace the current document with a complete new version. Only use this when most of"
+            + " the document changes or when applyDocumentEdits failed.")
+    public static Map<String, Object> replaceDocument(
+            @Schema(name = "document", description = "The complete refined document") String document,
+            @Schema(name = "toolContext") ToolContext toolContext) {
+        toolContext.state().put(DOCUMENT_KEY, document);
+        toolContext.actions().setSkipSummarization(true);
+        AgentMetrics.increment("refinement.rewrite");
+        return Map.of("status", "success");
+    }
+
+    private static List<Edit> parse(String edits) {
+        Object value = JSON.readValue(edits, Object.class);
+        if (!(value instanceof List<?> list)) {
+            throw new IllegalArgumentException("edits must be a JSON array");
+        }
+        List<Edit> parsed = new ArrayList<>(list.size());
+        for (Object item : list) {
+            if (!(item instanceof Map<?, ?> edit) || !(edit.get("op") instanceof String op)) {
+                throw new IllegalArgumentException("Edit " + (parsed.size() + 1) + " must be an object with an op");
+            }
+            Op kind;
+            try {
+                kind = Op.valueOf(op.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Edit " + (parsed.size() + 1) + " has unknown op " + op);
+            }
+            Object anchor = edit.get(kind == Op.INSERT ? "after" : "find");
+            Object text = edit.get("text");
+            parsed.add(new Edit(kind, anchor == null ? null : anchor.toString(), text == null ? null : text.toString()));
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.agent.refinement;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Validates structured edits against a document and applies them all at once.
+ *
+ * Edits locate their range by quoting the document instead of using offsets or line numbers, which models get
+ * wrong: {@code replace} and {@code delete} name the exact text they change, {@code insert} the exact text it
+ * goes after (an empty anchor inserts at the start). Every quoted text must occur exactly once in the original
+ * document and the ranges must not overlap; otherwise nothing is applied and an {@link IllegalArgumentException}
+ * explains which edit is wrong.
+ */
+public final class DocumentEdits {
+
+    public enum Op { REPLACE, INSERT, DELETE }
+
+    /** One edit; {@code anchor} is the text to replace or delete, or the text to insert after. */
+    public record Edit(Op op, String anchor, String text) {}
+
+    private DocumentEdits() {}
+
+    public static String apply(String document, List<Edit> edits) {
+        if (edits.isEmpty()) {
+            throw new IllegalArgumentException("No edits given");
+        }
+        List<Range> ranges = new ArrayList<>(edits.size());
+        for (int i = 0; i < edits.size(); i++) {
+            ranges.add(locate(document, edits.get(i), i + 1));
+        }
+        ranges.sort(Comparator.comparingInt(Range::start).thenComparingInt(Range::end));
+        for (int i = 1; i < ranges.size(); i++) {
+            Range previous = ranges.get(i - 1);
+            Range range = ranges.get(i);
+            boolean sameInsertionPoint = range.isInsertion() && previous.isInsertion()
+                    && range.start() == previous.start();
+            if (range.start() < previous.end() || sameInsertionPoint) {
+                throw new IllegalArgumentException(
+                        "Edits " + previous.number() + " and " + range.number() + " overlap");
+            }
+        }
+
+        StringBuilder result = new StringBuilder(document.length());
+        int copied = 0;
+        for (Range range : ranges) {
+            result.append(document, copied, range.start()).append(range.replacement());
+            copied = range.end();
+        }
+        return result.append(document, copied, document.length()).toString();
+    }
+
+    private static Range locate(String document, Edit edit, int number) {
+        if (edit.op() == null || edit.anchor() == null) {
+            throw new IllegalArgumentException("Edit " + number + " needs an op and the text it applies to");
+        }
+        String text = edit.text() == null ? "" : edit.text();
+        if (edit.op() == Op.INSERT && edit.anchor().isEmpty()) {
+            return new Range(number, 0, 0, text);
+        }
+        if (edit.anchor().isEmpty()) {
+            throw new IllegalArgumentException("Edit " + number + " has no text to " + edit.op().name().toLowerCase());
+        }
+        int start = document.indexOf(edit.anchor());
+        if (start < 0) {
+            throw new IllegalArgumentException("Edit " + number + ": text not found in the document: \""
+                    + edit.anchor() + "\"");
+        }
+        if (document.indexOf(edit.anchor(), start + 1) >= 0) {
+            throw new IllegalArgumentException("Edit " + number + ": text occurs more than once, quote more of it: \""
+                    + edit.anchor() + "\"");
+        }
+        int end = start + edit.anchor().length();
+        return switch (edit.op()) {
+            case REPLACE -> new Range(number, start, end, text);
+            case DELETE -> new Range(number, start, end, "");
+            case INSERT -> new Range(number, end, end, text);
+        };
+    }
+
+    private record Range(int number, int start, int end, String replacement) {
+        boolean isInsertion() {
+            return start == end;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.agent.replay;
+
+import com.google.adk.models.LlmResponse;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Recorded model and tool interactions of one or more agent runs, loaded from a cassette file.
+ *
+ * A cassette is a gzip stream starting with {@code "ADKC"} and a version byte, followed by records:
+ * {@code MODEL} records hold the model name, the request fingerprint and the request it was computed from,
+ * the offset of the call from the start of the recording and every response chunk (the response's JSON) with
+ * its offset from the start of the call;
+ * {@code TOOL} records hold the tool name, the argument fingerprint, the result and the call duration.
+ * Lengths and times are varints, so a typical run takes a few kilobytes.
+ *
+ * Interactions are served per fingerprint in recording order. Replay is therefore deterministic even when
+ * parallel agents issued their calls in a different order than during the recording. A model call only matches
+ * if its request equals the recorded one, so a fingerprint collision cannot serve another request's responses.
+ * A model request that was not recorded fails the replay, unless the replay is lenient.
+ */
+public final class Cassette {
+
+    static final int MAGIC = 0x41444B43; // "ADKC"
+    static final int VERSION = 3;
+    static final int MODEL_RECORD = 1;
+    static final int TOOL_RECORD = 2;
+
+    public record Chunk(long offsetNanos, LlmResponse response) {}
+
+    public record ModelCall(long startNanos, String model, long fingerprint, String request, List<Chunk> chunks) {}
+
+    public record ToolCall(long startNanos, String tool, long fingerprint, Map<String, Object> result, long durationNanos) {}
+
+    private final Map<String, Deque<ModelCall>> modelCalls = new HashMap<>();
+    private final Map<String, Deque<ModelCall>> modelCallsByModel = new HashMap<>();
+    private final Map<String, Deque<ToolCall>> toolCalls = new HashMap<>();
+    private final int modelCallCount;
+    private final int toolCallCount;
+
+    private Cassette(List<ModelCall> models, List<ToolCall> tools) {
+        for (ModelCall call : models) {
+            modelCalls.computeIfAbsent(call.model() + "#" + call.fingerprint(), k -> new ArrayDeque<>()).add(call);
+            modelCallsByModel.computeIfAbsent(call.model(), k -> new ArrayDeque<>()).add(call);
+        }
+        for (ToolCall call : tools) {
+            toolCalls.computeIfAbsent(call.tool() + "#" + call.fingerprint(), k -> new ArrayDeque<>()).add(call);
+        }
+        this.modelCallCount = models.size();
+        this.toolCallCount = tools.size();
+    }
+
+    public static Cassette load(Path file) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            return read(stream);
+        }
+    }
+
+    public static Cassette read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)));
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+            throw new IOException("Not a version " + VERSION + " cassette");
+        }
+        List<ModelCall> models = new ArrayList<>();
+        List<ToolCall> tools = new ArrayList<>();
+        while (true) {
+            int type;
+            try {
+                type = in.readUnsignedByte();
+            } catch (EOFException e) {
+                break;
+            }
+            long startNanos = CassetteCodec.readVarLong(in);
+            String name = CassetteCodec.readString(in);
+            long fingerprint = in.readLong();
+            if (type == MODEL_RECORD) {
+                String request = CassetteCodec.readString(in);
+                int count = CassetteCodec.readVarInt(in);
+                List<Chunk> chunks = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    chunks.add(new Chunk(CassetteCodec.readVarLong(in), CassetteCodec.readResponse(in)));
+                }
+                models.add(new ModelCall(startNanos, name, fingerprint, request, Collections.unmodifiableList(chunks)));
+            } else if (type == TOOL_RECORD) {
+                Map<String, Object> result = CassetteCodec.readMap(in);
+                tools.add(new ToolCall(startNanos, name, fingerprint, result, CassetteCodec.readVarLong(in)));
+            } else {
+                throw new IOException("Unknown cassette record type " + type);
+            }
+        }
+        return new Cassette(models, tools);
+    }
+
+    /**
+     * Takes the next recorded call for this model and request. If the request was not recorded verbatim, a
+     * lenient replay falls back to the next call recorded for the model (e.g. for a prompt containing the
+     * current time); a strict one finds nothing.
+     */
+    synchronized Optional<ModelCall> takeModelCall(String model, String request, boolean lenient) {
+        Deque<ModelCall> exact = modelCalls.get(model + "#" + CassetteCodec.fingerprint(request));
+        ModelCall call = exact == null ? null : exact.stream()
+                .filter(recorded -> recorded.request().equals(request))
+                .findFirst()
+                .orElse(null);
+        if (call != null) {
+            exact.remove(call);
+        }
+        Deque<ModelCall> byModel = modelCallsByModel.getOrDefault(model, new ArrayDeque<>());
+        if (call == null && !lenient) {
+            return Optional.empty();
+        }
+        if (call == null) {
+            call = byModel.poll();
+            if (call != null) {
+                modelCalls.get(call.model() + "#" + call.fingerprint()).remove(call);
+            }
+        } else {
+            byModel.remove(call);
+        }
+        return Optional.ofNullable(call);
+    }
+
+    synchronized Optional<ToolCall> takeToolCall(String tool, long fingerprint) {
+        Deque<ToolCall> calls = toolCalls.get(tool + "#" + fingerprint);
+        return Optional.ofNullable(calls == null ? null : calls.poll());
+    }
+
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("modelCalls", modelCallCount);
+        summary.put("toolCalls", toolCallCount);
+        return summary;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.agent.replay;
+
+import com.google.adk.JsonBaseModel;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import com.google.genai.types.Content;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import tools.jackson.databind.json.JsonMapper;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** Binary encoding of model responses and tool results in a cassette, and request fingerprinting. */
+final class CassetteCodec {
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    // ADK assigns random "adk-..." ids to function calls; they must not change a request's fingerprint.
+    private static final Pattern CLIENT_IDS = Pattern.compile("\"id\"\\s*:\\s*\"adk-[^\"]*\"");
+
+    private CassetteCodec() {}
+
+    /**
+     * Everything the provider sees, one line each: model, system instruction, contents and tool names. JSON
+     * escapes line breaks, so lines never run into each other.
+     */
+    static String request(String model, LlmRequest llmRequest) {
+        StringBuilder request = new StringBuilder(model).append('\n');
+        request.append(llmRequest.config()
+                .flatMap(config -> config.systemInstruction())
+                .map(Content::toJson)
+                .orElse("")).append('\n');
+        for (Content content : llmRequest.contents()) {
+            request.append(CLIENT_IDS.matcher(content.toJson()).replaceAll("")).append('\n');
+        }
+        for (String tool : new TreeMap<>(llmRequest.tools()).keySet()) {
+            request.append(tool).append('\n');
+        }
+        return request.toString();
+    }
+
+    /** Stable hash of a {@link #request(String, LlmRequest)}. */
+    static long fingerprint(String request) {
+        return hash(0, request);
+    }
+
+    static long fingerprint(String tool, Map<String, Object> args) {
+        return hash(hash(0, tool), JSON.writeValueAsString(new TreeMap<>(args)));
+    }
+
+    /** Writes the whole response as the library's JSON, so every field replays as it was recorded. */
+    static void writeResponse(DataOutput out, LlmResponse response) throws IOException {
+        writeString(out, response.toJson());
+    }
+
+    static LlmResponse readResponse(DataInput in) throws IOException {
+        return JsonBaseModel.fromJsonString(readString(in), LlmResponse.class);
+    }
+
+    static void writeMap(DataOutput out, Map<String, Object> map) throws IOException {
+        writeString(out, JSON.writeValueAsString(map));
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> readMap(DataInput in) throws IOException {
+        return JSON.readValue(readString(in), Map.class);
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in cassette");
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static long hash(long seed, String value) {
+        long h = seed ^ 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.agent.replay;
+
+import com.example.agent.metrics.AgentMetrics;
+import com.google.adk.tools.BaseTool;
+import com.google.adk.tools.ToolContext;
+import com.google.genai.types.FunctionDeclaration;
+import io.reactivex.rxjava3.core.Single;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording and replaying wrappers for tools with external or non-deterministic backends.
+ *
+ * Tools with side effects on the session, such as {@code exitLoop} escalating out of a loop, must not be
+ * replayed: their effect is not part of their result.
+ */
+final class CassetteTools {
+
+    private CassetteTools() {}
+
+    static class RecordingTool extends BaseTool {
+        private final BaseTool delegate;
+        private final CassetteWriter writer;
+
+        RecordingTool(BaseTool delegate, CassetteWriter writer) {
+            super(delegate.name(), delegate.description());
+            this.delegate = delegate;
+            this.writer = writer;
+        }
+
+        @Override
+        public Optional<FunctionDeclaration> declaration() {
+            return delegate.declaration();
+        }
+
+        @Override
+        public Single<Map<String, Object>> runAsync(Map<String, Object> args, ToolContext toolContext) {
+            return Single.defer(() -> {
+                long callStart = writer.elapsedNanos();
+                return delegate.runAsync(args, toolContext)
+                        .doOnSuccess(result -> writer.writeToolCall(
+                                callStart, name(), CassetteCodec.fingerprint(name(), args), result,
+                                writer.elapsedNanos() - callStart));
+            });
+        }
+    }
+
+    static class ReplayTool extends BaseTool {
+        private final BaseTool delegate;
+        private final Cassette cassette;
+        private final Playback playback;
+
+        ReplayTool(BaseTool delegate, Cassette cassette, Playback playback) {
+            super(delegate.name(), delegate.description());
+            this.delegate = delegate;
+            this.cassette = cassette;
+            this.playback = playback;
+        }
+
+        @Override
+        public Optional<FunctionDeclaration> declaration() {
+            return delegate.declaration();
+        }
+
+        @Override
+        public Single<Map<String, Object>> runAsync(Map<String, Object> args, ToolContext toolContext) {
+            return Single.defer(() -> {
+                Cassette.ToolCall call = cassette.takeToolCall(name(), CassetteCodec.fingerprint(name(), args))
+                        .orElseThrow(() -> new IllegalStateException(
+                                "No recorded call of tool " + name() + " with arguments " + args));
+                AgentMetrics.increment("replay.tool.exact");
+                long delay = playback.scale(call.durationNanos());
+                Single<Map<String, Object>> result = Single.just(call.result());
+                return delay == 0 ? result : result.delay(delay, TimeUnit.NANOSECONDS);
+            });
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.agent.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends model and tool records to a cassette file (see {@link Cassette} for the format).
+ *
+ * Records are encoded off-lock and appended under a lock, and the gzip stream is sync-flushed after each
+ * record so a recording interrupted by a crash is still readable up to the last completed call.
+ */
+public final class CassetteWriter implements AutoCloseable {
+
+    private final long startNanos = System.nanoTime();
+    private final DataOutputStream out;
+
+    public CassetteWriter(Path file) throws IOException {
+        OutputStream stream = Files.newOutputStream(file);
+        this.out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(stream), true));
+        out.writeInt(Cassette.MAGIC);
+        out.writeByte(Cassette.VERSION);
+        out.flush();
+    }
+
+    /** Nanoseconds since the recording started. */
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    void writeModelCall(long callStartNanos, String model, String request, List<Cassette.Chunk> chunks) {
+        write(record -> {
+            record.writeByte(Cassette.MODEL_RECORD);
+            CassetteCodec.writeVarLong(record, callStartNanos);
+            CassetteCodec.writeString(record, model);
+            record.writeLong(CassetteCodec.fingerprint(request));
+            CassetteCodec.writeString(record, request);
+            CassetteCodec.writeVarInt(record, chunks.size());
+            for (Cassette.Chunk chunk : chunks) {
+                CassetteCodec.writeVarLong(record, chunk.offsetNanos());
+                CassetteCodec.writeResponse(record, chunk.response());
+            }
+        });
+    }
+
+    void writeToolCall(long callStartNanos, String tool, long fingerprint, Map<String, Object> result, long durationNanos) {
+        write(record -> {
+            record.writeByte(Cassette.TOOL_RECORD);
+            CassetteCodec.writeVarLong(record, callStartNanos);
+            CassetteCodec.writeString(record, tool);
+            record.writeLong(fingerprint);
+            CassetteCodec.writeMap(record, result);
+            CassetteCodec.writeVarLong(record, durationNanos);
+        });
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private void write(RecordEncoder encoder) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            encoder.encode(new DataOutputStream(bytes));
+            synchronized (this) {
+                bytes.writeTo(out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write cassette record", e);
+        }
+    }
+
+    private interface RecordEncoder {
+        void encode(DataOutputStream record) throws IOException;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.agent.replay;
+
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.LlmRegistry;
+import com.google.adk.tools.BaseTool;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Entry point used by the examples to make their models and tools recordable and replayable.
+ *
+ * The mode is read from the {@code adk.cassette.mode} system property or the {@code ADK_CASSETTE_MODE}
+ * environment variable: {@code off} (default) uses the real models, {@code record} calls the real models
+ * and records to the cassette file, {@code replay} serves everything from the cassette file. The file is
+ * set with {@code adk.cassette.file} / {@code ADK_CASSETTE_FILE} (default {@code agent-run.cassette}) and
+ * the replay speed with {@code adk.cassette.playback} / {@code ADK_CASSETTE_PLAYBACK} ({@code original},
+ * {@code instant} or a compression factor; default {@code original}). A replay fails on a model request that
+ * was not recorded, unless {@code adk.cassette.lenient} / {@code ADK_CASSETTE_LENIENT} is {@code true}.
+ */
+public final class Cassettes {
+
+    public enum Mode {
+        OFF,
+        RECORD,
+        REPLAY
+    }
+
+    private Cassettes() {}
+
+    public static Mode mode() {
+        return Mode.valueOf(setting("adk.cassette.mode", "ADK_CASSETTE_MODE", "off").toUpperCase());
+    }
+
+    /** The model registered under {@code modelName}, recording or replaying according to the mode. */
+    public static BaseLlm model(String modelName) {
+        return switch (mode()) {
+            case OFF -> LlmRegistry.getLlm(modelName);
+            case RECORD -> new RecordingModel(LlmRegistry.getLlm(modelName), Holder.writer());
+            case REPLAY -> new ReplayModel(modelName, Holder.cassette(), playback(), lenient());
+        };
+    }
+
+    /** Wraps a tool without session side effects so its results are recorded or replayed. */
+    public static BaseTool tool(BaseTool tool) {
+        return switch (mode()) {
+            case OFF -> tool;
+            case RECORD -> new CassetteTools.RecordingTool(tool, Holder.writer());
+            case REPLAY -> new CassetteTools.ReplayTool(tool, Holder.cassette(), playback());
+        };
+    }
+
+    /**
+     * Drops the loaded cassette so that models and tools created afterwards replay it from the beginning.
+     * Used to replay the same recording several times in one process.
+     */
+    public static void reload() {
+        Holder.reset();
+    }
+
+    static Path file() {
+        return Path.of(setting("adk.cassette.file", "ADK_CASSETTE_FILE", "agent-run.cassette"));
+    }
+
+    static Playback playback() {
+        return Playback.parse(setting("adk.cassette.playback", "ADK_CASSETTE_PLAYBACK", "original"));
+    }
+
+    static boolean lenient() {
+        return Boolean.parseBoolean(setting("adk.cassette.lenient", "ADK_CASSETTE_LENIENT", "false"));
+    }
+
+    private static String setting(String property, String environment, String defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null) {
+            value = System.getenv(environment);
+        }
+        return value == null ? defaultValue : value;
+    }
+
+    /** Lazily opens the one cassette writer or reader shared by all models and tools of the process. */
+    private static final class Holder {
+        private static CassetteWriter writer;
+        private static Cassette cassette;
+
+        static synchronized CassetteWriter writer() {
+            if (writer == null) {
+                try {
+                    writer = new CassetteWriter(file());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to create cassette " + file(), e);
+                }
+                CassetteWriter opened = writer;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        opened.close();
+                    } catch (IOException ignored) {
+                        // the cassette is sync-flushed after every record
+                    }
+                }));
+            }
+            return writer;
+        }
+
+        static synchronized void reset() {
+            cassette = null;
+        }
+
+        static synchronized Cassette cassette() {
+            if (cassette == null) {
+                try {
+                    cassette = Cassette.load(file());
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to load cassette " + file(), e);
+                }
+            }
+            return cassette;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.agent.replay;
+
+/**
+ * How recorded provider and tool latencies are reproduced during replay.
+ *
+ * @param timeScale factor applied to recorded delays: 1 reproduces the original timing, 0.1 plays back
+ *     ten times faster, 0 serves everything immediately
+ */
+public record Playback(double timeScale) {
+
+    public static Playback original() {
+        return new Playback(1.0);
+    }
+
+    /** Plays back {@code factor} times faster; {@code factor} must be positive. */
+    public static Playback compressed(double factor) {
+        if (!(factor > 0) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("Compression factor must be a positive number, got " + factor);
+        }
+        return new Playback(1.0 / factor);
+    }
+
+    public static Playback instant() {
+        return new Playback(0);
+    }
+
+    /** Parses {@code original}, {@code instant} or a positive compression factor such as {@code 10}. */
+    public static Playback parse(String value) {
+        return switch (value) {
+            case "original" -> original();
+            case "instant" -> instant();
+            default -> compressed(Double.parseDouble(value));
+        };
+    }
+
+    long scale(long nanos) {
+        return (long) (nanos * timeScale);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.agent.replay;
+
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.BaseLlmConnection;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import io.reactivex.rxjava3.core.Flowable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Model that forwards calls to a real model and records every response chunk and its timing. Live connections
+ * are passed to the real model without being recorded.
+ */
+public class RecordingModel extends BaseLlm {
+
+    private final BaseLlm delegate;
+    private final CassetteWriter writer;
+
+    public RecordingModel(BaseLlm delegate, CassetteWriter writer) {
+        super(delegate.model());
+        this.delegate = delegate;
+        this.writer = writer;
+    }
+
+    @Override
+    public Flowable<LlmResponse> generateContent(LlmRequest llmRequest, boolean stream) {
+        return Flowable.defer(() -> {
+            long callStart = writer.elapsedNanos();
+            String request = CassetteCodec.request(model(), llmRequest);
+            List<Cassette.Chunk> chunks = new ArrayList<>();
+            return delegate.generateContent(llmRequest, stream)
+                    .doOnNext(response -> chunks.add(new Cassette.Chunk(writer.elapsedNanos() - callStart, response)))
+                    .doOnComplete(() -> writer.writeModelCall(callStart, model(), request, chunks));
+        });
+    }
+
+    @Override
+    public BaseLlmConnection connect(LlmRequest llmRequest) {
+        // Live sessions are bidirectional streams without request/response pairs to replay; they pass through
+        return delegate.connect(llmRequest);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.agent.replay;
+
+import com.example.agent.metrics.AgentMetrics;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.BaseLlmConnection;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import io.reactivex.rxjava3.core.Flowable;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Model that serves responses from a {@link Cassette} instead of calling a provider.
+ *
+ * Response chunks are emitted with their recorded delays scaled by the {@link Playback}; with
+ * {@link Playback#instant()} they are emitted synchronously, so a replayed run only measures the runner
+ * and the agents' own code. Calls missing from the cassette fail with {@link IllegalStateException}; a lenient
+ * replay serves the next call recorded for the model instead and logs a warning for each such fallback.
+ */
+public class ReplayModel extends BaseLlm {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplayModel.class);
+
+    private final Cassette cassette;
+    private final Playback playback;
+    private final boolean lenient;
+
+    public ReplayModel(String model, Cassette cassette, Playback playback) {
+        this(model, cassette, playback, false);
+    }
+
+    public ReplayModel(String model, Cassette cassette, Playback playback, boolean lenient) {
+        super(model);
+        this.cassette = cassette;
+        this.playback = playback;
+        this.lenient = lenient;
+    }
+
+    @Override
+    public Flowable<LlmResponse> generateContent(LlmRequest llmRequest, boolean stream) {
+        return Flowable.defer(() -> {
+            String request = CassetteCodec.request(model(), llmRequest);
+            long fingerprint = CassetteCodec.fingerprint(request);
+            Cassette.ModelCall call = cassette.takeModelCall(model(), request, lenient)
+                    .orElseThrow(() -> new IllegalStateException(lenient
+                            ? "No recorded call left for model " + model()
+                            : "No recorded call of model " + model() + " matches the request (fingerprint "
+                                    + Long.toHexString(fingerprint) + "); the run differs from the recording"));
+            if (call.request().equals(request)) {
+                AgentMetrics.increment("replay.model.exact");
+            } else {
+                AgentMetrics.increment("replay.model.fallback");
+                LOG.warn("Request to {} was not recorded (fingerprint {}); lenient replay serves the call recorded"
+                        + " as {}", model(), Long.toHexString(fingerprint), Long.toHexString(call.fingerprint()));
+            }
+
+            if (playback.timeScale() == 0) {
+                return Flowable.fromIterable(call.chunks()).map(Cassette.Chunk::response);
+            }
+            long[] previousOffset = {0};
+            return Flowable.fromIterable(call.chunks())
+                    .concatMap(chunk -> {
+                        long delay = playback.scale(chunk.offsetNanos() - previousOffset[0]);
+                        previousOffset[0] = chunk.offsetNanos();
+                        return Flowable.just(chunk.response()).delay(delay, TimeUnit.NANOSECONDS);
+                    });
+        });
+    }
+
+    @Override
+    public BaseLlmConnection connect(LlmRequest llmRequest) {
+        throw new UnsupportedOperationException("Live connections cannot be replayed");
+    }
+}
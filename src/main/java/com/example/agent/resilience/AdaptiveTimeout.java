@@ -0,0 +1,159 @@
+package com.example.agent.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * A timeout that follows the observed latency of a provider: a percentile of the recent samples times a
+ * multiplier, clamped between a minimum and a maximum.
+ *
+ * Until {@code minSamples} latencies have been recorded the initial timeout applies. Only successful calls give
+ * latencies; timeouts are kept out of the window, so that a few stalls cannot raise the percentile. Instead,
+ * each consecutive timeout extends the timeout by {@code timeoutGrowth}, up to {@code maxTimeoutGrowth} times
+ * the latency-based value, and the next successful call removes the extension: when a provider slows down for
+ * good, calls get more time and their latencies then move the percentile up.
+ */
+public final class AdaptiveTimeout {
+
+    private final long initialNanos;
+    private final long minNanos;
+    private final long maxNanos;
+    private final double percentile;
+    private final double multiplier;
+    private final int minSamples;
+    private final double timeoutGrowth;
+    private final double maxTimeoutGrowth;
+    private final long[] window;
+    private int next;
+    private int size;
+    private long observedNanos;
+    private int consecutiveTimeouts;
+    private volatile long currentNanos;
+
+    private AdaptiveTimeout(Builder builder) {
+        this.initialNanos = builder.initial.toNanos();
+        this.minNanos = builder.min.toNanos();
+        this.maxNanos = builder.max.toNanos();
+        this.percentile = builder.percentile;
+        this.multiplier = builder.multiplier;
+        this.minSamples = builder.minSamples;
+        this.timeoutGrowth = builder.timeoutGrowth;
+        this.maxTimeoutGrowth = builder.maxTimeoutGrowth;
+        this.window = new long[builder.window];
+        this.observedNanos = initialNanos;
+        this.currentNanos = initialNanos;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Duration current() {
+        return Duration.ofNanos(currentNanos);
+    }
+
+    public long currentMillis() {
+        return currentNanos / 1_000_000;
+    }
+
+    /** Records the latency of a successful call. */
+    public synchronized void record(long latencyNanos) {
+        window[next] = latencyNanos;
+        next = (next + 1) % window.length;
+        size = Math.min(size + 1, window.length);
+        consecutiveTimeouts = 0;
+        if (size >= minSamples) {
+            long[] samples = Arrays.copyOf(window, size);
+            Arrays.sort(samples);
+            long observed = samples[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+            observedNanos = (long) (observed * multiplier);
+        }
+        update();
+    }
+
+    /** Records a call that was cut off by the current timeout; its duration is not a latency sample. */
+    public synchronized void recordTimeout() {
+        consecutiveTimeouts++;
+        update();
+    }
+
+    private void update() {
+        double growth = Math.min(maxTimeoutGrowth, Math.pow(timeoutGrowth, consecutiveTimeouts));
+        currentNanos = Math.max(minNanos, Math.min(maxNanos, (long) (observedNanos * growth)));
+    }
+
+    public static class Builder {
+        private Duration initial = Duration.ofSeconds(30);
+        private Duration min = Duration.ofSeconds(1);
+        private Duration max = Duration.ofSeconds(120);
+        private double percentile = 0.99;
+        private double multiplier = 2.0;
+        private int window = 200;
+        private int minSamples = 20;
+        private double timeoutGrowth = 1.5;
+        private double maxTimeoutGrowth = 2.0;
+
+        private Builder() {}
+
+        /** The timeout until enough latencies have been observed. */
+        public Builder initial(Duration initial) {
+            this.initial = initial;
+            return this;
+        }
+
+        public Builder min(Duration min) {
+            this.min = min;
+            return this;
+        }
+
+        public Builder max(Duration max) {
+            this.max = max;
+            return this;
+        }
+
+        /** The latency percentile (0..1) the timeout is derived from; 0.99 by default. */
+        public Builder percentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /** The headroom over that percentile; 2 by default. */
+        public Builder multiplier(double multiplier) {
+            this.multiplier = multiplier;
+            return this;
+        }
+
+        /** The number of most recent latencies kept; 200 by default. */
+        public Builder window(int window) {
+            this.window = window;
+            return this;
+        }
+
+        public Builder minSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /** The extension of the timeout per consecutive timeout; 1.5 by default. */
+        public Builder timeoutGrowth(double timeoutGrowth) {
+            this.timeoutGrowth = timeoutGrowth;
+            return this;
+        }
+
+        /** The largest extension after consecutive timeouts, as a factor; 2 by default. */
+        public Builder maxTimeoutGrowth(double maxTimeoutGrowth) {
+            this.maxTimeoutGrowth = maxTimeoutGrowth;
+            return this;
+        }
+
+        public AdaptiveTimeout build() {
+            if (min.compareTo(max) > 0 || minSamples < 1 || minSamples > window || timeoutGrowth < 1
+                    || maxTimeoutGrowth < 1) {
+                throw new IllegalStateException("Invalid adaptive timeout: min " + min + ", max " + max
+                        + ", " + minSamples + " of " + window + " samples, growth " + timeoutGrowth + " up to "
+                        + maxTimeoutGrowth);
+            }
+            return new AdaptiveTimeout(this);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.agent.resilience;
+
+import com.example.agent.metrics.AgentMetrics;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Circuit breaker over the outcome of the most recent calls to a provider.
+ *
+ * CLOSED: calls go through and their outcomes fill a window of the last {@code windowSize} calls; once it holds
+ * at least {@code minimumCalls} outcomes and the failure rate reaches the threshold, the breaker opens.
+ * OPEN: calls are rejected until the open duration has passed, then the breaker is HALF_OPEN.
+ * HALF_OPEN: up to {@code halfOpenProbes} calls at a time are let through as probes; a successful probe closes
+ * the breaker, a failed one opens it again for twice as long as before (up to {@code maxOpenDuration}).
+ *
+ * Each permitted call must report its outcome on its {@link Permit}. Outcomes of calls permitted before the
+ * breaker last changed state are ignored.
+ *
+ * Metrics ({@code breaker.<name>.}): {@code state} (0 closed, 1 half-open, 2 open), {@code opened},
+ * {@code closed}, {@code probes} and {@code rejected}.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final long maxOpenNanos;
+    private final int halfOpenProbes;
+
+    // Ring of the last outcomes while closed: true for a failure
+    private final boolean[] outcomes;
+    private int next;
+    private int calls;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long currentOpenNanos;
+    private long openUntil;
+    private int probesInFlight;
+    // Incremented on every state change, so that outcomes of calls permitted before it are ignored
+    private long generation;
+
+    private CircuitBreaker(Builder builder) {
+        this.name = builder.name;
+        this.windowSize = builder.windowSize;
+        this.minimumCalls = builder.minimumCalls;
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.openNanos = builder.openDuration.toNanos();
+        this.maxOpenNanos = builder.maxOpenDuration.toNanos();
+        this.halfOpenProbes = builder.halfOpenProbes;
+        this.outcomes = new boolean[windowSize];
+        this.currentOpenNanos = openNanos;
+        AgentMetrics.gauge(metric("state"), () -> state().ordinal());
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /**
+     * A permit for a call if it may go through now, or empty if the call is rejected. An OPEN breaker whose
+     * open duration has passed admits a probe.
+     */
+    public synchronized Optional<Permit> tryAcquire() {
+        if (state == State.OPEN && System.nanoTime() - openUntil >= 0) {
+            transition(State.HALF_OPEN);
+            probesInFlight = 0;
+        }
+        if (state == State.CLOSED) {
+            return Optional.of(new Permit(generation));
+        }
+        if (state == State.HALF_OPEN && probesInFlight < halfOpenProbes) {
+            probesInFlight++;
+            AgentMetrics.increment(metric("probes"));
+            return Optional.of(new Permit(generation));
+        }
+        AgentMetrics.increment(metric("rejected"));
+        return Optional.empty();
+    }
+
+    /** One permitted call; only its first outcome counts. */
+    public final class Permit {
+        private final long permitGeneration;
+        private boolean done;
+
+        private Permit(long permitGeneration) {
+            this.permitGeneration = permitGeneration;
+        }
+
+        public void onSuccess() {
+            synchronized (CircuitBreaker.this) {
+                if (settle()) {
+                    if (state == State.HALF_OPEN) {
+                        close();
+                    } else {
+                        add(false);
+                    }
+                }
+            }
+        }
+
+        public void onFailure() {
+            synchronized (CircuitBreaker.this) {
+                if (!settle()) {
+                    return;
+                }
+                if (state == State.HALF_OPEN) {
+                    currentOpenNanos = Math.min(maxOpenNanos, currentOpenNanos * 2);
+                    open();
+                } else {
+                    add(true);
+                    if (calls >= minimumCalls && failures >= failureRateThreshold * calls) {
+                        open();
+                    }
+                }
+            }
+        }
+
+        /** The call was abandoned by its caller before it succeeded or failed. */
+        public void onCancelled() {
+            synchronized (CircuitBreaker.this) {
+                if (settle() && state == State.HALF_OPEN) {
+                    probesInFlight--;
+                }
+            }
+        }
+
+        private boolean settle() {
+            boolean current = !done && permitGeneration == generation;
+            done = true;
+            return current;
+        }
+    }
+
+    private void add(boolean failure) {
+        if (calls == windowSize) {
+            failures -= outcomes[next] ? 1 : 0;
+        } else {
+            calls++;
+        }
+        outcomes[next] = failure;
+        failures += failure ? 1 : 0;
+        next = (next + 1) % windowSize;
+    }
+
+    private void transition(State newState) {
+        state = newState;
+        generation++;
+    }
+
+    private void open() {
+        transition(State.OPEN);
+        openUntil = System.nanoTime() + currentOpenNanos;
+        AgentMetrics.increment(metric("opened"));
+    }
+
+    private void close() {
+        transition(State.CLOSED);
+        currentOpenNanos = openNanos;
+        calls = 0;
+        failures = 0;
+        next = 0;
+        AgentMetrics.increment(metric("closed"));
+    }
+
+    private String metric(String suffix) {
+        return "breaker." + name + "." + suffix;
+    }
+
+    public static class Builder {
+        private final String name;
+        private int windowSize = 20;
+        private int minimumCalls = 5;
+        private double failureRateThreshold = 0.5;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private Duration maxOpenDuration = Duration.ofMinutes(5);
+        private int halfOpenProbes = 1;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /** The number of most recent calls the failure rate is computed over; 20 by default. */
+        public Builder windowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        /** The number of calls in the window before the breaker may open; 5 by default. */
+        public Builder minimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /** The failure rate (0..1) that opens the breaker; 0.5 by default. */
+        public Builder failureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /** How long the breaker stays open before the first probe; 30 seconds by default. */
+        public Builder openDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /** The cap on the open duration, which doubles after each failed probe; 5 minutes by default. */
+        public Builder maxOpenDuration(Duration maxOpenDuration) {
+            this.maxOpenDuration = maxOpenDuration;
+            return this;
+        }
+
+        /** The number of concurrent probes while half-open; 1 by default. */
+        public Builder halfOpenProbes(int halfOpenProbes) {
+            this.halfOpenProbes = halfOpenProbes;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            if (minimumCalls < 1 || minimumCalls > windowSize || halfOpenProbes < 1) {
+                throw new IllegalStateException("Invalid circuit breaker " + name + ": " + minimumCalls
+                        + " minimum calls of " + windowSize + ", " + halfOpenProbes + " probes");
+            }
+            return new CircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.agent.resilience;
+
+import com.example.agent.metrics.AgentMetrics;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.BaseLlmConnection;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import com.google.genai.types.Content;
+import com.google.genai.types.Part;
+import io.reactivex.rxjava3.core.Flowable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for a provider that answers with a fixed text after a configurable latency and injects faults:
+ * failures (as the {@link IOException} of a dropped connection), calls that never answer, and streams that
+ * stall after their first chunk.
+ *
+ * The fault rates can be changed while calls are running, e.g. to simulate an outage and the recovery of a
+ * provider behind a {@link ResilientModel}. No network is involved.
+ *
+ * Metrics ({@code faults.<name>.}): {@code calls}, {@code injected.failure}, {@code injected.stall} and
+ * {@code injected.stall.mid.stream}.
+ */
+public class FaultInjectingModel extends BaseLlm {
+
+    private final String answer;
+    private final Duration latency;
+    private final double jitter;
+    private final int chunks;
+    private volatile double failureRate;
+    private volatile double stallRate;
+    private volatile double midStreamStallRate;
+
+    private FaultInjectingModel(Builder builder) {
+        super(builder.name);
+        this.answer = builder.answer;
+        this.latency = builder.latency;
+        this.jitter = builder.jitter;
+        this.chunks = builder.chunks;
+        this.failureRate = builder.failureRate;
+        this.stallRate = builder.stallRate;
+        this.midStreamStallRate = builder.midStreamStallRate;
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    /** The fraction of calls that fail with an exception, after half the latency. */
+    public void failureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /** The fraction of calls that never answer. */
+    public void stallRate(double stallRate) {
+        this.stallRate = stallRate;
+    }
+
+    /** The fraction of streaming calls that stop after their first chunk without completing. */
+    public void midStreamStallRate(double midStreamStallRate) {
+        this.midStreamStallRate = midStreamStallRate;
+    }
+
+    @Override
+    public Flowable<LlmResponse> generateContent(LlmRequest llmRequest, boolean stream) {
+        return Flowable.defer(() -> {
+            AgentMetrics.increment(metric("calls"));
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long latencyMillis = Math.round(latency.toMillis() * (1 + jitter * (2 * random.nextDouble() - 1)));
+            double roll = random.nextDouble();
+            if (roll < stallRate) {
+                AgentMetrics.increment(metric("injected.stall"));
+                return Flowable.never();
+            }
+            if (roll < stallRate + failureRate) {
+                AgentMetrics.increment(metric("injected.failure"));
+                return Flowable.timer(latencyMillis / 2, TimeUnit.MILLISECONDS)
+                        .flatMap(tick -> Flowable.error(new IOException("Injected failure of " + model())));
+            }
+            if (!stream) {
+                return Flowable.timer(latencyMillis, TimeUnit.MILLISECONDS).map(tick -> response(answer, false));
+            }
+            boolean stall = random.nextDouble() < midStreamStallRate;
+            if (stall) {
+                AgentMetrics.increment(metric("injected.stall.mid.stream"));
+            }
+            long chunkMillis = latencyMillis / chunks;
+            Flowable<LlmResponse> partials = Flowable.fromIterable(split(answer, chunks))
+                    .concatMap(chunk -> Flowable.timer(chunkMillis, TimeUnit.MILLISECONDS)
+                            .map(tick -> response(chunk, true)));
+            return stall
+                    ? partials.take(1).concatWith(Flowable.never())
+                    : partials.concatWith(Flowable.just(response(answer, false)));
+        });
+    }
+
+    @Override
+    public BaseLlmConnection connect(LlmRequest llmRequest) {
+        throw new UnsupportedOperationException("Live connections are not simulated");
+    }
+
+    private static LlmResponse response(String text, boolean partial) {
+        LlmResponse.Builder builder = LlmResponse.builder()
+                .content(Content.builder().role("model").parts(Part.fromText(text)).build())
+                .partial(partial);
+        if (!partial) {
+            builder.turnComplete(true);
+        }
+        return builder.build();
+    }
+
+    private static List<String> split(String text, int parts) {
+        List<String> chunks = new ArrayList<>(parts);
+        int size = Math.max(1, (text.length() + parts - 1) / parts);
+        for (int i = 0; i < text.length(); i += size) {
+            chunks.add(text.substring(i, Math.min(text.length(), i + size)));
+        }
+        return chunks;
+    }
+
+    private String metric(String suffix) {
+        return "faults." + model() + "." + suffix;
+    }
+
+    public static class Builder {
+        private final String name;
+        private String answer = "This is a stand-in answer.";
+        private Duration latency = Duration.ofMillis(200);
+        private double jitter = 0.2;
+        private int chunks = 4;
+        private double failureRate;
+        private double stallRate;
+        private double midStreamStallRate;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder answer(String answer) {
+            this.answer = answer;
+            return this;
+        }
+
+        /** The mean time to the complete answer; 200ms by default. */
+        public Builder latency(Duration latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /** The relative spread (0..1) of the latency around its mean; 0.2 by default. */
+        public Builder jitter(double jitter) {
+            this.jitter = jitter;
+            return this;
+        }
+
+        /** The number of partial responses of a streaming call; 4 by default. */
+        public Builder chunks(int chunks) {
+            this.chunks = chunks;
+            return this;
+        }
+
+        public Builder failureRate(double failureRate) {
+            this.failureRate = failureRate;
+            return this;
+        }
+
+        public Builder stallRate(double stallRate) {
+            this.stallRate = stallRate;
+            return this;
+        }
+
+        public Builder midStreamStallRate(double midStreamStallRate) {
+            this.midStreamStallRate = midStreamStallRate;
+            return this;
+        }
+
+        public FaultInjectingModel build() {
+            return new FaultInjectingModel(this);
+        }
+    }
+}
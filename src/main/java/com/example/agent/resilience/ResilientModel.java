@@ -0,0 +1,258 @@
+package com.example.agent.resilience;
+
+import com.example.agent.metrics.AgentMetrics;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.BaseLlmConnection;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import com.google.genai.errors.ApiException;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.retry.TransientAiException;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Model that bounds the calls to a provider with adaptive timeouts, stops calling it while it is unhealthy and
+ * fails over to an alternative model instead.
+ *
+ * Each call gets a timeout for its first response, derived from the provider's recent latencies (one
+ * {@link AdaptiveTimeout} for non-streaming calls, one for the first chunk of streaming calls), and a timeout
+ * for the gap between chunks. Timeouts, connection errors and 5xx responses are reported to a
+ * {@link CircuitBreaker} as failures; other errors, such as a 4xx for an invalid request, say nothing about the
+ * provider's health and count as successful calls. A call that fails before it emitted anything, and every call
+ * while the breaker is open, goes to the fallback model; a call that fails mid-stream fails, since part of its
+ * answer has already been delivered. Failovers are subscribed on the I/O scheduler, not on the timer thread that
+ * signalled the timeout. Without a fallback the error is passed on, and calls rejected by the open breaker fail
+ * immediately with an {@link IllegalStateException}.
+ *
+ * The timeouts and the breaker describe the provider, so agents using the same provider should share one
+ * instance. The provider's own client timeout should be left above the maximum of the adaptive timeouts.
+ *
+ * Metrics ({@code resilience.<name>.}): {@code timeout}, {@code error}, {@code failover} and
+ * {@code failover.open|timeout|error}, {@code primary|fallback.latency.us}, and the current timeouts as gauges
+ * {@code timeout.response|first.chunk|idle.ms}; the breaker reports under {@code breaker.<name>.}.
+ */
+public class ResilientModel extends BaseLlm {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResilientModel.class);
+
+    private final String name;
+    private final BaseLlm primary;
+    private final Supplier<BaseLlm> fallbackSupplier;
+    private volatile BaseLlm fallback;
+    private final CircuitBreaker breaker;
+    private final AdaptiveTimeout responseTimeout;
+    private final AdaptiveTimeout firstChunkTimeout;
+    private final AdaptiveTimeout idleTimeout;
+
+    private ResilientModel(Builder builder) {
+        super(builder.primary.model());
+        this.name = builder.name;
+        this.primary = builder.primary;
+        this.fallbackSupplier = builder.fallback;
+        this.breaker = builder.circuitBreaker != null ? builder.circuitBreaker : CircuitBreaker.builder(name).build();
+        this.responseTimeout = builder.responseTimeout;
+        this.firstChunkTimeout = builder.firstChunkTimeout;
+        this.idleTimeout = builder.idleTimeout;
+        AgentMetrics.gauge(metric("timeout.response.ms"), responseTimeout::currentMillis);
+        AgentMetrics.gauge(metric("timeout.first.chunk.ms"), firstChunkTimeout::currentMillis);
+        AgentMetrics.gauge(metric("timeout.idle.ms"), idleTimeout::currentMillis);
+    }
+
+    public static Builder builder(String name, BaseLlm primary) {
+        return new Builder(name, primary);
+    }
+
+    public CircuitBreaker circuitBreaker() {
+        return breaker;
+    }
+
+    @Override
+    public Flowable<LlmResponse> generateContent(LlmRequest llmRequest, boolean stream) {
+        return Flowable.defer(() -> {
+            Optional<CircuitBreaker.Permit> permit = breaker.tryAcquire();
+            if (permit.isEmpty()) {
+                return failover(llmRequest, stream, "open",
+                        new IllegalStateException("Circuit of " + name + " is open"));
+            }
+            return callPrimary(permit.get(), llmRequest, stream);
+        });
+    }
+
+    @Override
+    public BaseLlmConnection connect(LlmRequest llmRequest) {
+        if (fallbackSupplier != null && breaker.state() == CircuitBreaker.State.OPEN) {
+            AgentMetrics.increment(metric("failover.open"));
+            BaseLlm fallback = fallback();
+            return fallback.connect(llmRequest.toBuilder().model(fallback.model()).build());
+        }
+        return primary.connect(llmRequest);
+    }
+
+    private Flowable<LlmResponse> callPrimary(CircuitBreaker.Permit permit, LlmRequest llmRequest, boolean stream) {
+        AdaptiveTimeout firstTimeout = stream ? firstChunkTimeout : responseTimeout;
+        long firstMillis = firstTimeout.currentMillis();
+        long idleMillis = idleTimeout.currentMillis();
+        long start = System.nanoTime();
+        AtomicLong previous = new AtomicLong(start);
+        AtomicBoolean emitted = new AtomicBoolean();
+
+        return primary.generateContent(llmRequest, stream)
+                .timeout(Flowable.timer(firstMillis, TimeUnit.MILLISECONDS),
+                        response -> Flowable.timer(idleMillis, TimeUnit.MILLISECONDS))
+                .doOnNext(response -> {
+                    long now = System.nanoTime();
+                    long gap = now - previous.getAndSet(now);
+                    (emitted.getAndSet(true) ? idleTimeout : firstTimeout).record(gap);
+                })
+                .doOnComplete(() -> {
+                    permit.onSuccess();
+                    AgentMetrics.recordSince(metric("primary.latency.us"), start);
+                })
+                .doOnCancel(permit::onCancelled)
+                .onErrorResumeNext(error -> {
+                    if (isProviderFailure(error)) {
+                        permit.onFailure();
+                    } else {
+                        permit.onSuccess();
+                    }
+                    String reason = error instanceof TimeoutException ? "timeout" : "error";
+                    AgentMetrics.increment(metric(reason));
+                    if (error instanceof TimeoutException) {
+                        (emitted.get() ? idleTimeout : firstTimeout).recordTimeout();
+                    }
+                    return emitted.get()
+                            ? Flowable.error(error)
+                            : Flowable.defer(() -> failover(llmRequest, stream, reason, error))
+                                    .subscribeOn(Schedulers.io());
+                });
+    }
+
+    /** Whether the error says the provider is unhealthy: a timeout, a connection error or a 5xx response. */
+    static boolean isProviderFailure(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof IOException
+                    || cause instanceof TransientAiException) {
+                return true;
+            }
+            if (cause instanceof ApiException apiError) {
+                return apiError.code() >= 500;
+            }
+            if (cause instanceof RestClientResponseException responseError) {
+                return responseError.getStatusCode().is5xxServerError();
+            }
+        }
+        return false;
+    }
+
+    private Flowable<LlmResponse> failover(LlmRequest llmRequest, boolean stream, String reason, Throwable error) {
+        if (fallbackSupplier == null) {
+            return Flowable.error(error);
+        }
+        BaseLlm fallback = fallback();
+        AgentMetrics.increment(metric("failover"));
+        AgentMetrics.increment(metric("failover." + reason));
+        LOG.debug("{} fails over to {} ({}): {}", name, fallback.model(), reason, error.toString());
+        long start = System.nanoTime();
+        return fallback.generateContent(llmRequest.toBuilder().model(fallback.model()).build(), stream)
+                .doOnComplete(() -> AgentMetrics.recordSince(metric("fallback.latency.us"), start));
+    }
+
+    /** The fallback model, created on the first failover. */
+    private BaseLlm fallback() {
+        BaseLlm resolved = fallback;
+        if (resolved == null) {
+            synchronized (this) {
+                if (fallback == null) {
+                    fallback = fallbackSupplier.get();
+                }
+                resolved = fallback;
+            }
+        }
+        return resolved;
+    }
+
+    private String metric(String suffix) {
+        return "resilience." + name + "." + suffix;
+    }
+
+    public static class Builder {
+        private final String name;
+        private final BaseLlm primary;
+        private Supplier<BaseLlm> fallback;
+        private CircuitBreaker circuitBreaker;
+        private AdaptiveTimeout responseTimeout = AdaptiveTimeout.builder()
+                .initial(Duration.ofSeconds(60))
+                .min(Duration.ofSeconds(5))
+                .max(Duration.ofSeconds(120))
+                .build();
+        private AdaptiveTimeout firstChunkTimeout = AdaptiveTimeout.builder()
+                .initial(Duration.ofSeconds(20))
+                .min(Duration.ofSeconds(2))
+                .max(Duration.ofSeconds(60))
+                .build();
+        private AdaptiveTimeout idleTimeout = AdaptiveTimeout.builder()
+                .initial(Duration.ofSeconds(20))
+                .min(Duration.ofSeconds(2))
+                .max(Duration.ofSeconds(60))
+                .build();
+
+        private Builder(String name, BaseLlm primary) {
+            this.name = name;
+            this.primary = primary;
+        }
+
+        /** The model called while the primary's circuit is open or when a call fails before its first response. */
+        public Builder fallback(BaseLlm fallback) {
+            this.fallback = () -> fallback;
+            return this;
+        }
+
+        /**
+         * Like {@link #fallback(BaseLlm)}, but the model is only created on the first failover, so that e.g. its
+         * credentials are not needed until then.
+         */
+        public Builder fallback(Supplier<BaseLlm> fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        /** The primary's breaker; one with the default settings and the model's name otherwise. */
+        public Builder circuitBreaker(CircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+
+        /** The timeout of a non-streaming call. */
+        public Builder responseTimeout(AdaptiveTimeout responseTimeout) {
+            this.responseTimeout = responseTimeout;
+            return this;
+        }
+
+        /** The timeout until the first chunk of a streaming call. */
+        public Builder firstChunkTimeout(AdaptiveTimeout firstChunkTimeout) {
+            this.firstChunkTimeout = firstChunkTimeout;
+            return this;
+        }
+
+        /** The timeout between two chunks of a streaming call. */
+        public Builder idleTimeout(AdaptiveTimeout idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        public ResilientModel build() {
+            return new ResilientModel(this);
+        }
+    }
+}
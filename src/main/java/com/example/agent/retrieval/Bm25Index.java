@@ -0,0 +1,258 @@
+package com.example.agent.retrieval;
+
+import com.example.agent.metrics.AgentMetrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * In-process BM25 full-text index stored as memory-mapped segment files in a directory.
+ *
+ * Documents are buffered by {@link #add(String, String)} and written as a new immutable {@link Segment}
+ * on {@link #commit()} (or automatically every {@code flushThreshold} documents), so indexing is
+ * incremental. Searches read an immutable snapshot of the segment list published through an
+ * {@link AtomicReference}: they never take a lock and never see a partially written segment. Writers are
+ * serialized with each other only.
+ *
+ * Metrics: {@code retrieval.search.latency.us} and {@code retrieval.commit.latency.us}.
+ */
+public class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bm25";
+    private static final int POOLED_ACCUMULATORS = Runtime.getRuntime().availableProcessors();
+
+    /** Published segment list, with the per-document length normalization precomputed for each segment. */
+    private record Snapshot(List<Segment> segments, List<float[]> norms, long docCount, long totalLength) {}
+
+    private record ScoredDoc(int segment, int doc, double score) {}
+
+    private final Path directory;
+    private final int flushThreshold;
+    private final AtomicReference<Snapshot> snapshot;
+    private final Object writeLock = new Object();
+    private final List<Segment.Document> pending = new ArrayList<>();
+    private final ArrayBlockingQueue<Accumulator> accumulators = new ArrayBlockingQueue<>(POOLED_ACCUMULATORS);
+    private int nextSegment;
+
+    private Bm25Index(Path directory, int flushThreshold, List<Segment> segments, int nextSegment) {
+        this.directory = directory;
+        this.flushThreshold = flushThreshold;
+        this.snapshot = new AtomicReference<>(snapshotOf(segments));
+        this.nextSegment = nextSegment;
+    }
+
+    /** Opens the index in {@code directory}, creating the directory if needed. */
+    public static Bm25Index open(Path directory) throws IOException {
+        return open(directory, 100_000);
+    }
+
+    public static Bm25Index open(Path directory, int flushThreshold) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> segmentNumber(file) >= 0)
+                    .sorted(Comparator.comparingLong(Bm25Index::segmentNumber))
+                    .toList();
+        }
+        List<Segment> segments = new ArrayList<>(files.size());
+        for (Path file : files) {
+            segments.add(Segment.open(file));
+        }
+        // Numbering continues after the highest segment, not the count: after a gap in the numbers (a segment
+        // deleted by hand, say) the count would name an existing segment, which is memory-mapped
+        int nextSegment = files.isEmpty() ? 0 : Math.toIntExact(segmentNumber(files.get(files.size() - 1)) + 1);
+        return new Bm25Index(directory, flushThreshold, segments, nextSegment);
+    }
+
+    /** The number in a segment file's name, or -1 when the file is not a segment. */
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        String number = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+        for (int i = 0; i < number.length(); i++) {
+            if (number.charAt(i) < '0' || number.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public void add(String id, String text) {
+        synchronized (writeLock) {
+            pending.add(new Segment.Document(id, text));
+            if (pending.size() >= flushThreshold) {
+                commit();
+            }
+        }
+    }
+
+    /** Writes the buffered documents to a new segment and makes them visible to searches. */
+    public void commit() {
+        synchronized (writeLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            long start = System.nanoTime();
+            Path file = directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, nextSegment++, SEGMENT_SUFFIX));
+            try {
+                Segment.write(file, pending);
+                List<Segment> segments = new ArrayList<>(snapshot.get().segments());
+                segments.add(Segment.open(file));
+                snapshot.set(snapshotOf(segments));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write segment " + file, e);
+            }
+            pending.clear();
+            AgentMetrics.recordSince("retrieval.commit.latency.us", start);
+        }
+    }
+
+    /** Number of committed (searchable) documents. */
+    public long documentCount() {
+        return snapshot.get().docCount();
+    }
+
+    public List<SearchHit> search(String query, int topK) {
+        long start = System.nanoTime();
+        Snapshot current = snapshot.get();
+        if (current.docCount() == 0 || topK <= 0) {
+            return List.of();
+        }
+        List<byte[]> terms = new LinkedHashSet<>(Tokenizer.tokenize(query)).stream()
+                .map(term -> term.getBytes(UTF_8))
+                .toList();
+
+        // Document frequencies are global across segments so scores are comparable between segments.
+        int segmentCount = current.segments().size();
+        int[][] termIndexes = new int[segmentCount][terms.size()];
+        double[] idf = new double[terms.size()];
+        for (int t = 0; t < terms.size(); t++) {
+            long df = 0;
+            for (int s = 0; s < segmentCount; s++) {
+                Segment segment = current.segments().get(s);
+                termIndexes[s][t] = segment.findTerm(terms.get(t));
+                df += termIndexes[s][t] < 0 ? 0 : segment.docFrequency(termIndexes[s][t]);
+            }
+            idf[t] = Math.log(1 + (current.docCount() - df + 0.5) / (df + 0.5));
+        }
+
+        PriorityQueue<ScoredDoc> top = new PriorityQueue<>(Comparator.comparingDouble(ScoredDoc::score));
+        Accumulator pooled = accumulators.poll();
+        Accumulator accumulator = pooled != null ? pooled : new Accumulator();
+        for (int s = 0; s < segmentCount; s++) {
+            Segment segment = current.segments().get(s);
+            float[] norms = current.norms().get(s);
+            accumulator.ensureCapacity(segment.docCount());
+            for (int t = 0; t < terms.size(); t++) {
+                int termIndex = termIndexes[s][t];
+                if (termIndex < 0) {
+                    continue;
+                }
+                int postings = segment.postingsStart(termIndex);
+                int df = segment.docFrequency(termIndex);
+                for (int i = 0; i < df; i++) {
+                    int doc = segment.postingDoc(postings, i);
+                    int tf = segment.postingFrequency(postings, i);
+                    accumulator.add(doc, idf[t] * tf * (K1 + 1) / (tf + norms[doc]));
+                }
+            }
+            for (int i = 0; i < accumulator.touchedCount; i++) {
+                int doc = accumulator.touched[i];
+                double score = accumulator.scores[doc];
+                if (top.size() < topK) {
+                    top.add(new ScoredDoc(s, doc, score));
+                } else if (score > top.peek().score()) {
+                    top.poll();
+                    top.add(new ScoredDoc(s, doc, score));
+                }
+            }
+            accumulator.reset();
+        }
+        accumulators.offer(accumulator);
+
+        List<SearchHit> hits = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            ScoredDoc scored = top.poll();
+            Segment segment = current.segments().get(scored.segment());
+            hits.add(new SearchHit(segment.docId(scored.doc()), segment.docText(scored.doc()), scored.score()));
+        }
+        AgentMetrics.recordSince("retrieval.search.latency.us", start);
+        Collections.reverse(hits);
+        return hits;
+    }
+
+    private static Snapshot snapshotOf(List<Segment> segments) {
+        long docCount = 0;
+        long totalLength = 0;
+        for (Segment segment : segments) {
+            docCount += segment.docCount();
+            totalLength += segment.totalLength();
+        }
+        double averageLength = docCount == 0 ? 1 : (double) totalLength / docCount;
+        List<float[]> norms = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            float[] segmentNorms = new float[segment.docCount()];
+            for (int doc = 0; doc < segmentNorms.length; doc++) {
+                segmentNorms[doc] = (float) (K1 * (1 - B + B * segment.docLength(doc) / averageLength));
+            }
+            norms.add(segmentNorms);
+        }
+        return new Snapshot(List.copyOf(segments), List.copyOf(norms), docCount, totalLength);
+    }
+
+    /**
+     * Score accumulator of one search, sized for the largest segment. Searches take one from the index's pool
+     * and return it, so at most one per core is kept alive between searches; concurrent searches beyond that
+     * allocate their own, which is dropped afterwards.
+     */
+    private static final class Accumulator {
+        double[] scores = new double[0];
+        int[] touched = new int[16];
+        int touchedCount;
+
+        void ensureCapacity(int docCount) {
+            if (scores.length < docCount) {
+                scores = new double[docCount];
+            }
+        }
+
+        void add(int doc, double score) {
+            if (scores[doc] == 0) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touched.length * 2);
+                }
+                touched[touchedCount++] = doc;
+            }
+            scores[doc] += score;
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0;
+            }
+            touchedCount = 0;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.agent.retrieval;
+
+import com.google.adk.tools.Annotations.Schema;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Search tool over a locally indexed document corpus, used instead of {@code GoogleSearchTool} so research
+ * pipelines are deterministic and run offline.
+ *
+ * The index lives in {@code RESEARCH_INDEX_DIR}, or by default in a temporary directory that is deleted when
+ * the JVM exits. When that directory holds no segments yet, it is built from the {@code .txt} files in
+ * {@code RESEARCH_CORPUS_DIR} (one document per file), or from the bundled {@code research-corpus.tsv}
+ * ({@code id<TAB>text} per line).
+ */
+public class LocalResearchSearch {
+
+    private static final String INDEX_DIR_ENV = "RESEARCH_INDEX_DIR";
+    private static final String CORPUS_DIR_ENV = "RESEARCH_CORPUS_DIR";
+    private static final String BUNDLED_CORPUS = "/research-corpus.tsv";
+    private static final int TOP_K = 5;
+
+    @Schema(description = "Search the local research corpus and return the most relevant passages for a query")
+    public static Map<String, Object> searchCorpus(
+            @Schema(name = "query", description = "Keywords describing the topic to research") String query) {
+        List<SearchHit> hits = IndexHolder.INDEX.search(query, TOP_K);
+        if (hits.isEmpty()) {
+            return Map.of("status", "error", "report", "No documents found for: " + query);
+        }
+        return Map.of(
+                "status", "success",
+                "results", hits.stream()
+                        .map(hit -> Map.of("source", hit.id(), "passage", hit.text()))
+                        .toList());
+    }
+
+    /** Lazily opens (and if needed builds) the index on first search. */
+    private static final class IndexHolder {
+        static final Bm25Index INDEX = openIndex();
+
+        private static Bm25Index openIndex() {
+            try {
+                String indexDir = System.getenv(INDEX_DIR_ENV);
+                Bm25Index index = Bm25Index.open(indexDir != null ? Path.of(indexDir) : temporaryDirectory());
+                if (index.documentCount() == 0) {
+                    String corpusDir = System.getenv(CORPUS_DIR_ENV);
+                    if (corpusDir != null) {
+                        indexDirectory(index, Path.of(corpusDir));
+                    } else {
+                        indexBundledCorpus(index);
+                    }
+                    index.commit();
+                }
+                return index;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to open the research index", e);
+            }
+        }
+
+        private static Path temporaryDirectory() throws IOException {
+            Path directory = Files.createTempDirectory("research-index");
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try (Stream<Path> files = Files.walk(directory)) {
+                    for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException ignored) {
+                    // best effort: the directory is under the system's temporary directory
+                }
+            }));
+            return directory;
+        }
+
+        private static void indexDirectory(Bm25Index index, Path corpusDir) throws IOException {
+            try (Stream<Path> files = Files.walk(corpusDir)) {
+                for (Path file : files.filter(f -> f.toString().endsWith(".txt")).sorted().toList()) {
+                    index.add(corpusDir.relativize(file).toString(), Files.readString(file));
+                }
+            }
+        }
+
+        private static void indexBundledCorpus(Bm25Index index) throws IOException {
+            try (InputStream in = LocalResearchSearch.class.getResourceAsStream(BUNDLED_CORPUS)) {
+                if (in == null) {
+                    throw new IOException("Missing bundled corpus " + BUNDLED_CORPUS);
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab > 0) {
+                        index.add(line.substring(0, tab), line.substring(tab + 1));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.example.agent.retrieval;
+
+/** A document returned by {@link Bm25Index#search(String, int)}, with its BM25 score. */
+public record SearchHit(String id, String text, double score) {}
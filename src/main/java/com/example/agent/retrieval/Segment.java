@@ -0,0 +1,267 @@
+package com.example.agent.retrieval;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Immutable, memory-mapped segment of a {@link Bm25Index}.
+ *
+ * Layout (big-endian): a 64 byte header, the document lengths, a term table sorted by the terms' UTF-8
+ * bytes (20 byte entries: term offset, term length, document frequency, postings offset), the term bytes,
+ * the postings ({@code docId, tf} int pairs), a document table of store offsets and the stored documents
+ * ({@code idLength, id, textLength, text}). Readers only use absolute reads on the mapped buffer, so any
+ * number of threads can search a segment without locking.
+ */
+final class Segment {
+
+    private static final int MAGIC = 0x424D3235; // "BM25"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int TERM_ENTRY_BYTES = 20;
+    private static final int POSTING_BYTES = 8;
+
+    /** A document waiting to be written to a segment. */
+    record Document(String id, String text) {}
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int docCount;
+    private final int termCount;
+    private final long totalLength;
+    private final int termTableOffset;
+    private final int termBytesOffset;
+    private final int postingsOffset;
+    private final int docTableOffset;
+    private final int storeOffset;
+
+    private Segment(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Not a BM25 segment: " + file);
+        }
+        this.docCount = buffer.getInt(8);
+        this.termCount = buffer.getInt(12);
+        this.totalLength = buffer.getLong(16);
+        this.termTableOffset = (int) buffer.getLong(24);
+        this.termBytesOffset = (int) buffer.getLong(32);
+        this.postingsOffset = (int) buffer.getLong(40);
+        this.docTableOffset = (int) buffer.getLong(48);
+        this.storeOffset = (int) buffer.getLong(56);
+    }
+
+    static Segment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Segment larger than 2GB: " + file);
+            }
+            return new Segment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int docCount() {
+        return docCount;
+    }
+
+    long totalLength() {
+        return totalLength;
+    }
+
+    int docLength(int doc) {
+        return buffer.getInt(HEADER_BYTES + doc * 4);
+    }
+
+    /** Returns the index of the term in the term table, or -1 if the segment does not contain it. */
+    int findTerm(byte[] term) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareTerm(mid, term);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    int docFrequency(int termIndex) {
+        return buffer.getInt(termTableOffset + termIndex * TERM_ENTRY_BYTES + 8);
+    }
+
+    int postingsStart(int termIndex) {
+        return postingsOffset + (int) buffer.getLong(termTableOffset + termIndex * TERM_ENTRY_BYTES + 12);
+    }
+
+    int postingDoc(int postingsStart, int i) {
+        return buffer.getInt(postingsStart + i * POSTING_BYTES);
+    }
+
+    int postingFrequency(int postingsStart, int i) {
+        return buffer.getInt(postingsStart + i * POSTING_BYTES + 4);
+    }
+
+    String docId(int doc) {
+        int offset = storeOffset + (int) buffer.getLong(docTableOffset + doc * 8);
+        return readString(offset);
+    }
+
+    String docText(int doc) {
+        int offset = storeOffset + (int) buffer.getLong(docTableOffset + doc * 8);
+        return readString(offset + 4 + buffer.getInt(offset));
+    }
+
+    private String readString(int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private int compareTerm(int termIndex, byte[] term) {
+        int entry = termTableOffset + termIndex * TERM_ENTRY_BYTES;
+        int offset = termBytesOffset + buffer.getInt(entry);
+        int length = buffer.getInt(entry + 4);
+        int common = Math.min(length, term.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(offset + i) & 0xFF, term[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, term.length);
+    }
+
+    /**
+     * Tokenizes and writes the documents to {@code file}. The segment is written to a temporary file and
+     * moved into place, so a concurrent {@link Bm25Index#open(Path)} never sees a partial segment.
+     */
+    static void write(Path file, List<Document> documents) throws IOException {
+        int docCount = documents.size();
+        int[] docLengths = new int[docCount];
+        Map<String, Postings> postingsByTerm = new HashMap<>();
+        long totalLength = 0;
+
+        for (int doc = 0; doc < docCount; doc++) {
+            Map<String, Integer> termFrequencies = new HashMap<>();
+            List<String> terms = Tokenizer.tokenize(documents.get(doc).text());
+            for (String term : terms) {
+                termFrequencies.merge(term, 1, Integer::sum);
+            }
+            for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+                postingsByTerm.computeIfAbsent(entry.getKey(), k -> new Postings()).add(doc, entry.getValue());
+            }
+            docLengths[doc] = terms.size();
+            totalLength += terms.size();
+        }
+
+        List<Map.Entry<byte[], Postings>> sortedTerms = new ArrayList<>(postingsByTerm.size());
+        postingsByTerm.forEach((term, p) -> sortedTerms.add(Map.entry(term.getBytes(UTF_8), p)));
+        sortedTerms.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+        List<byte[]> terms = sortedTerms.stream().map(Map.Entry::getKey).toList();
+        List<Postings> postings = sortedTerms.stream().map(Map.Entry::getValue).toList();
+
+        long termBytesLength = terms.stream().mapToLong(term -> term.length).sum();
+        long postingsLength = postings.stream().mapToLong(p -> (long) p.size * 4).sum();
+        List<byte[][]> stored = new ArrayList<>(docCount);
+        long storeLength = 0;
+        for (Document document : documents) {
+            byte[][] fields = {document.id().getBytes(UTF_8), document.text().getBytes(UTF_8)};
+            stored.add(fields);
+            storeLength += 8 + fields[0].length + fields[1].length;
+        }
+
+        long termTableOffset = HEADER_BYTES + docCount * 4L;
+        long termBytesOffset = termTableOffset + (long) terms.size() * TERM_ENTRY_BYTES;
+        long postingsOffset = termBytesOffset + termBytesLength;
+        long docTableOffset = postingsOffset + postingsLength;
+        long storeOffset = docTableOffset + docCount * 8L;
+        if (storeOffset + storeLength > Integer.MAX_VALUE) {
+            throw new IOException("Segment would exceed 2GB, flush more often: " + file);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(docCount);
+            out.writeInt(terms.size());
+            out.writeLong(totalLength);
+            out.writeLong(termTableOffset);
+            out.writeLong(termBytesOffset);
+            out.writeLong(postingsOffset);
+            out.writeLong(docTableOffset);
+            out.writeLong(storeOffset);
+            for (int length : docLengths) {
+                out.writeInt(length);
+            }
+            int termOffset = 0;
+            long postingOffset = 0;
+            for (int i = 0; i < terms.size(); i++) {
+                out.writeInt(termOffset);
+                out.writeInt(terms.get(i).length);
+                out.writeInt(postings.get(i).size / 2);
+                out.writeLong(postingOffset);
+                termOffset += terms.get(i).length;
+                postingOffset += (long) postings.get(i).size * 4;
+            }
+            for (byte[] term : terms) {
+                out.write(term);
+            }
+            for (Postings p : postings) {
+                for (int i = 0; i < p.size; i++) {
+                    out.writeInt(p.data[i]);
+                }
+            }
+            long docOffset = 0;
+            for (byte[][] fields : stored) {
+                out.writeLong(docOffset);
+                docOffset += 8 + fields[0].length + fields[1].length;
+            }
+            for (byte[][] fields : stored) {
+                out.writeInt(fields[0].length);
+                out.write(fields[0]);
+                out.writeInt(fields[1].length);
+                out.write(fields[1]);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Growable {@code docId, tf} pairs of one term. */
+    private static final class Postings {
+        int[] data = new int[4];
+        int size;
+
+        void add(int doc, int frequency) {
+            if (size + 2 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = doc;
+            data[size++] = frequency;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.agent.retrieval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/** Lower-cases text and splits it into letter/digit terms, dropping English stop words. */
+public final class Tokenizer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "in", "is", "it",
+            "its", "of", "on", "or", "that", "the", "their", "this", "to", "was", "were", "what", "which",
+            "who", "why", "how", "with", "latest", "recent");
+
+    private Tokenizer() {}
+
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                term.append(Character.toLowerCase(c));
+            } else if (!term.isEmpty()) {
+                String candidate = term.toString();
+                if (candidate.length() > 1 && !STOP_WORDS.contains(candidate)) {
+                    terms.add(candidate);
+                }
+                term.setLength(0);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.agent.routing;
+
+import com.google.adk.models.LlmRequest;
+import com.google.genai.types.Content;
+import com.google.genai.types.Part;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Local, allocation-light classifier that scores how hard an {@link LlmRequest} is.
+ *
+ * It only looks at cheap structural signals (prompt size, code, tools, tool results and the outcome of
+ * the previous call) so that classification stays in the microsecond range and never calls a model.
+ */
+public class RequestClassifier {
+
+    private static final Pattern CODE_PATTERN =
+            Pattern.compile("```|\\b(public|private|class|import|def|return)\\b.*[;{:]\\s*$", Pattern.MULTILINE);
+
+    /** Outcome of the previous call made through a router, fed back into the next classification. */
+    public enum PreviousOutcome {
+        NONE,
+        FAST_OK,
+        ESCALATED,
+        STRONG
+    }
+
+    public record Features(
+            int promptChars, boolean hasCode, boolean hasTools, boolean hasToolResults, PreviousOutcome previous) {}
+
+    public Features extract(LlmRequest llmRequest, PreviousOutcome previous) {
+        int promptChars = 0;
+        boolean hasCode = false;
+        boolean hasToolResults = false;
+
+        List<Content> contents = new ArrayList<>(llmRequest.contents());
+        llmRequest.config().flatMap(config -> config.systemInstruction()).ifPresent(contents::add);
+
+        for (Content content : contents) {
+            for (Part part : content.parts().orElse(List.of())) {
+                if (part.text().isPresent()) {
+                    String text = part.text().get();
+                    promptChars += text.length();
+                    hasCode = hasCode || CODE_PATTERN.matcher(text).find();
+                }
+                hasToolResults = hasToolResults || part.functionResponse().isPresent();
+            }
+        }
+        return new Features(promptChars, hasCode, !llmRequest.tools().isEmpty(), hasToolResults, previous);
+    }
+
+    public int score(Features features, RoutingPolicy policy) {
+        int score = 0;
+        if (features.promptChars() >= policy.longPromptChars()) {
+            score += policy.longPromptWeight();
+        } else if (features.promptChars() >= policy.longPromptChars() / 2) {
+            score += policy.longPromptWeight() / 2;
+        }
+        if (features.hasCode()) {
+            score += policy.codeWeight();
+        }
+        if (features.hasTools()) {
+            score += policy.toolWeight();
+        }
+        if (features.hasToolResults()) {
+            score += policy.toolResultWeight();
+        }
+        if (features.previous() == PreviousOutcome.ESCALATED) {
+            score += policy.escalationWeight();
+        }
+        return score;
+    }
+
+    public boolean requiresStrongModel(Features features, RoutingPolicy policy) {
+        return score(features, policy) >= policy.threshold();
+    }
+}
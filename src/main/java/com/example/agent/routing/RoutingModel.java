@@ -0,0 +1,146 @@
+package com.example.agent.routing;
+
+import com.example.agent.context.CallerLabels;
+import com.example.agent.metrics.AgentMetrics;
+import com.example.agent.routing.RequestClassifier.Features;
+import com.example.agent.routing.RequestClassifier.PreviousOutcome;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.BaseLlmConnection;
+import com.google.adk.models.LlmRegistry;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import io.reactivex.rxjava3.core.Flowable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Model that routes each call either to a fast (flash-lite class) model or to a strong (pro class) model.
+ *
+ * Routing is decided locally by a {@link RequestClassifier} using a per-agent {@link RoutingPolicy}.
+ * Calls sent to the fast model are escalated to the strong model when the fast model fails before emitting
+ * anything, returns nothing, or (in non-streaming mode) returns an error or an empty answer. The next call
+ * of the same session through the same router is then scored with {@link PreviousOutcome#ESCALATED}, so an
+ * agent that keeps needing the strong model, like a refiner inside a loop, sticks to it for the following
+ * iteration. Routers live in agents shared by all sessions, so the previous outcome is kept per session: the
+ * agent must label its calls with {@link CallerLabels#beforeModelCallback()}. Unlabeled calls share one
+ * previous outcome. The outcomes of the 10,000 most recently active sessions are kept.
+ *
+ * Metrics: {@code router.<policy>.route.fast|strong}, {@code router.<policy>.escalated},
+ * {@code router.<policy>.fast|strong.latency.us} and {@code router.classify.latency.us}.
+ */
+public class RoutingModel extends BaseLlm implements CallerLabels.Reader {
+
+    private static final int MAX_SESSIONS = 10_000;
+
+    private final BaseLlm fastModel;
+    private final BaseLlm strongModel;
+    private final RoutingPolicy policy;
+    private final RequestClassifier classifier = new RequestClassifier();
+    // Least recently used order, so that the sessions that ended are dropped first
+    private final Map<String, PreviousOutcome> previousOutcomes = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreviousOutcome> eldest) {
+                    return size() > MAX_SESSIONS;
+                }
+            });
+
+    public RoutingModel(String fastModelName, String strongModelName, RoutingPolicy policy) {
+        this(LlmRegistry.getLlm(fastModelName), LlmRegistry.getLlm(strongModelName), policy);
+    }
+
+    public RoutingModel(BaseLlm fastModel, BaseLlm strongModel, RoutingPolicy policy) {
+        // Report the strong model's name so that name-based checks in ADK (e.g. built-in tools) still apply.
+        super(strongModel.model());
+        this.fastModel = fastModel;
+        this.strongModel = strongModel;
+        this.policy = policy;
+    }
+
+    @Override
+    public Flowable<LlmResponse> generateContent(LlmRequest llmRequest, boolean stream) {
+        long classifyStart = System.nanoTime();
+        String session = CallerLabels.caller(llmRequest).map(CallerLabels.Caller::sessionId).orElse("");
+        Features features = classifier.extract(llmRequest,
+                previousOutcomes.getOrDefault(session, PreviousOutcome.NONE));
+        boolean strong = classifier.requiresStrongModel(features, policy);
+        AgentMetrics.recordSince("router.classify.latency.us", classifyStart);
+        AgentMetrics.increment(metric(strong ? "route.strong" : "route.fast"));
+
+        if (strong) {
+            return call(strongModel, llmRequest, stream, "strong")
+                    .doOnComplete(() -> previousOutcomes.put(session, PreviousOutcome.STRONG));
+        }
+
+        AtomicBoolean emitted = new AtomicBoolean();
+        AtomicBoolean escalated = new AtomicBoolean();
+        Flowable<LlmResponse> fast = stream
+                ? call(fastModel, llmRequest, true, "fast")
+                : call(fastModel, llmRequest, false, "fast")
+                        .toList()
+                        .flatMapPublisher(responses -> isWeak(responses)
+                                ? Flowable.empty()
+                                : Flowable.fromIterable(responses));
+
+        return fast
+                .doOnNext(response -> emitted.set(true))
+                .onErrorResumeNext(error -> emitted.get()
+                        ? Flowable.error(error)
+                        : Flowable.empty())
+                .switchIfEmpty(Flowable.defer(() -> {
+                    escalated.set(true);
+                    return escalate(llmRequest, stream, session);
+                }))
+                .doOnComplete(() -> {
+                    if (!escalated.get()) {
+                        previousOutcomes.put(session, PreviousOutcome.FAST_OK);
+                    }
+                });
+    }
+
+    @Override
+    public BaseLlmConnection connect(LlmRequest llmRequest) {
+        // Live (bidirectional) sessions are long-lived, so they always use the strong model.
+        return strongModel.connect(CallerLabels.forward(strongModel,
+                llmRequest.toBuilder().model(strongModel.model()).build()));
+    }
+
+    private Flowable<LlmResponse> escalate(LlmRequest llmRequest, boolean stream, String session) {
+        AgentMetrics.increment(metric("escalated"));
+        previousOutcomes.put(session, PreviousOutcome.ESCALATED);
+        return call(strongModel, llmRequest, stream, "strong");
+    }
+
+    private Flowable<LlmResponse> call(BaseLlm model, LlmRequest llmRequest, boolean stream, String tier) {
+        return Flowable.defer(() -> {
+            long start = System.nanoTime();
+            LlmRequest routed = CallerLabels.forward(model, llmRequest.toBuilder().model(model.model()).build());
+            return model.generateContent(routed, stream)
+                    .doOnComplete(() -> AgentMetrics.recordSince(metric(tier + ".latency.us"), start));
+        });
+    }
+
+    private static boolean isWeak(List<LlmResponse> responses) {
+        if (responses.isEmpty()) {
+            return true;
+        }
+        LlmResponse last = responses.get(responses.size() - 1);
+        if (last.errorCode().isPresent()) {
+            return true;
+        }
+        return responses.stream()
+                .allMatch(response -> response.content()
+                        .flatMap(content -> content.parts())
+                        .map(parts -> parts.stream().allMatch(part ->
+                                part.text().map(String::isBlank).orElse(true)
+                                        && part.functionCall().isEmpty()))
+                        .orElse(true));
+    }
+
+    private String metric(String suffix) {
+        return "router." + policy.name() + "." + suffix;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.agent.routing;
+
+/**
+ * Per-agent weights used by {@link RequestClassifier} to decide when a request is too hard for the
+ * fast model. A request is sent to the strong model when its score reaches {@link #threshold()}.
+ *
+ * @param name label used in metric names, usually the agent name
+ * @param longPromptChars prompt size (system instruction plus contents) that counts as long
+ * @param longPromptWeight score added for a long prompt; half of it for a prompt over half that size
+ * @param codeWeight score added when the prompt contains source code
+ * @param toolWeight score added when tools are declared on the request
+ * @param toolResultWeight score added when the request carries tool results from an earlier step
+ * @param escalationWeight score added when the previous call through this router had to escalate
+ * @param threshold score at which the strong model is used
+ */
+public record RoutingPolicy(
+        String name,
+        int longPromptChars,
+        int longPromptWeight,
+        int codeWeight,
+        int toolWeight,
+        int toolResultWeight,
+        int escalationWeight,
+        int threshold) {
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public static class Builder {
+        private final String name;
+        private int longPromptChars = 4_000;
+        private int longPromptWeight = 2;
+        private int codeWeight = 2;
+        private int toolWeight = 1;
+        private int toolResultWeight = 1;
+        private int escalationWeight = 3;
+        private int threshold = 3;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder longPromptChars(int longPromptChars) {
+            this.longPromptChars = longPromptChars;
+            return this;
+        }
+
+        public Builder longPromptWeight(int longPromptWeight) {
+            this.longPromptWeight = longPromptWeight;
+            return this;
+        }
+
+        public Builder codeWeight(int codeWeight) {
+            this.codeWeight = codeWeight;
+            return this;
+        }
+
+        public Builder toolWeight(int toolWeight) {
+            this.toolWeight = toolWeight;
+            return this;
+        }
+
+        public Builder toolResultWeight(int toolResultWeight) {
+            this.toolResultWeight = toolResultWeight;
+            return this;
+        }
+
+        public Builder escalationWeight(int escalationWeight) {
+            this.escalationWeight = escalationWeight;
+            return this;
+        }
+
+        public Builder threshold(int threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        public RoutingPolicy build() {
+            return new RoutingPolicy(
+                    name, longPromptChars, longPromptWeight, codeWeight, toolWeight, toolResultWeight,
+                    escalationWeight, threshold);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.agent.scheduling;
+
+import com.example.agent.metrics.AgentMetrics;
+import io.reactivex.rxjava3.core.Flowable;
+import io.reactivex.rxjava3.schedulers.Schedulers;
+import io.reactivex.rxjava3.subjects.CompletableSubject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Admission of model calls to a shared provider with weighted fair queuing between tenants, priority classes
+ * and per-tenant concurrency caps for batch work.
+ *
+ * At most {@code maxConcurrency} calls run at once. A call that cannot start is queued for its tenant (an app
+ * or user) in its {@link Priority} class. When a slot frees up, an INTERACTIVE call always goes first; BATCH
+ * calls may only use {@code maxConcurrency - reservedForInteractive} slots, so interactive calls find a free slot
+ * even while batch jobs saturate the provider. Within a class the next call is the one with the smallest
+ * virtual finish time: each call of a tenant advances the tenant's finish time by {@code 1 / weight}, starting
+ * from the class's virtual time when the tenant was idle, so backlogged tenants share the slots in proportion
+ * to their weights however many calls each one queues. A tenant never runs more than {@code tenantConcurrency}
+ * BATCH calls at once, so that one batch job cannot take every batch slot. INTERACTIVE calls are not capped per
+ * tenant: an app serving many users is often a single tenant, and its users' calls are only bounded by the
+ * slots. A tenant never queues more than {@code maxQueuedPerTenant} calls per class; further calls fail with an
+ * {@link IllegalStateException}.
+ *
+ * A scheduler models the limits of one provider endpoint; {@link #shared(String)} keeps one per model.
+ *
+ * Metrics ({@code scheduler.<name>.}): {@code wait.interactive|batch.latency.us} (queue wait per class),
+ * gauges {@code running} and {@code queued.interactive|batch}, and {@code rejected}.
+ */
+public final class FairModelScheduler {
+
+    public enum Priority { INTERACTIVE, BATCH }
+
+    private static final ConcurrentMap<String, FairModelScheduler> SHARED = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int reservedForInteractive;
+    private final int tenantConcurrency;
+    private final int maxQueuedPerTenant;
+    private final Map<String, Double> tenantWeights;
+
+    private final Map<Priority, PriorityClass> classes = new EnumMap<>(Priority.class);
+    private final Map<String, Integer> batchRunningByTenant = new HashMap<>();
+    private int running;
+
+    private FairModelScheduler(Builder builder) {
+        this.name = builder.name;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.reservedForInteractive = builder.reservedForInteractive;
+        this.tenantConcurrency = builder.tenantConcurrency;
+        this.maxQueuedPerTenant = builder.maxQueuedPerTenant;
+        this.tenantWeights = Map.copyOf(builder.tenantWeights);
+        for (Priority priority : Priority.values()) {
+            classes.put(priority, new PriorityClass());
+            String className = priority.name().toLowerCase();
+            AgentMetrics.gauge(metric("queued." + className), () -> queued(priority));
+        }
+        AgentMetrics.gauge(metric("running"), this::running);
+    }
+
+    /**
+     * The process-wide scheduler of the examples for {@code model}, one per model, each sized by
+     * {@code MODEL_MAX_CONCURRENCY} (16), {@code MODEL_INTERACTIVE_RESERVE} (4) and
+     * {@code MODEL_TENANT_CONCURRENCY} (8). Its metrics are named after the model.
+     */
+    public static FairModelScheduler shared(String model) {
+        return SHARED.computeIfAbsent(model, name -> builder(name)
+                .maxConcurrency(Integer.parseInt(System.getenv().getOrDefault("MODEL_MAX_CONCURRENCY", "16")))
+                .reservedForInteractive(
+                        Integer.parseInt(System.getenv().getOrDefault("MODEL_INTERACTIVE_RESERVE", "4")))
+                .tenantConcurrency(Integer.parseInt(System.getenv().getOrDefault("MODEL_TENANT_CONCURRENCY", "8")))
+                .build());
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    /**
+     * Runs {@code call} once the scheduler admits it. The slot is released when the call terminates or is
+     * cancelled; a call cancelled while queued leaves the queue.
+     */
+    public <T> Flowable<T> schedule(String tenant, Priority priority, Flowable<T> call) {
+        return Flowable.defer(() -> {
+            Ticket ticket = new Ticket(tenant, priority);
+            if (!enqueue(ticket)) {
+                AgentMetrics.increment(metric("rejected"));
+                return Flowable.error(new IllegalStateException(
+                        "Too many queued model calls for " + tenant + " in " + name));
+            }
+            // A queued call is started by the thread that released its slot; move it off that thread
+            Flowable<T> admitted = ticket.immediate
+                    ? call
+                    : ticket.granted.observeOn(Schedulers.io()).andThen(call);
+            return admitted.doFinally(() -> release(ticket));
+        });
+    }
+
+    public synchronized int running() {
+        return running;
+    }
+
+    public synchronized int queued(Priority priority) {
+        return classes.get(priority).queues.values().stream().mapToInt(queue -> queue.tickets.size()).sum();
+    }
+
+    private boolean enqueue(Ticket ticket) {
+        List<Ticket> granted;
+        synchronized (this) {
+            PriorityClass priorityClass = classes.get(ticket.priority);
+            TenantQueue queue = priorityClass.queues.computeIfAbsent(ticket.tenant, tenant -> new TenantQueue());
+            if (queue.tickets.size() >= maxQueuedPerTenant) {
+                return false;
+            }
+            double weight = tenantWeights.getOrDefault(ticket.tenant, 1.0);
+            ticket.start = Math.max(priorityClass.virtualTime, queue.lastFinish);
+            ticket.finish = ticket.start + 1 / weight;
+            queue.lastFinish = ticket.finish;
+            queue.tickets.add(ticket);
+            granted = dispatch();
+            ticket.immediate = granted.contains(ticket);
+        }
+        grant(granted);
+        return true;
+    }
+
+    private void release(Ticket ticket) {
+        List<Ticket> granted;
+        synchronized (this) {
+            if (ticket.admitted) {
+                running--;
+                if (ticket.priority == Priority.BATCH) {
+                    batchRunningByTenant.merge(ticket.tenant, -1, Integer::sum);
+                    batchRunningByTenant.remove(ticket.tenant, 0);
+                }
+            } else {
+                PriorityClass priorityClass = classes.get(ticket.priority);
+                TenantQueue queue = priorityClass.queues.get(ticket.tenant);
+                if (queue != null) {
+                    queue.tickets.remove(ticket);
+                    if (queue.tickets.isEmpty()) {
+                        priorityClass.queues.remove(ticket.tenant);
+                    }
+                }
+            }
+            granted = dispatch();
+        }
+        grant(granted);
+    }
+
+    /** Admits queued calls while slots are free; returns them to be started outside the lock. */
+    private List<Ticket> dispatch() {
+        List<Ticket> granted = new ArrayList<>();
+        while (running < maxConcurrency) {
+            Ticket next = next(Priority.INTERACTIVE);
+            if (next == null && running < maxConcurrency - reservedForInteractive) {
+                next = next(Priority.BATCH);
+            }
+            if (next == null) {
+                break;
+            }
+            PriorityClass priorityClass = classes.get(next.priority);
+            TenantQueue queue = priorityClass.queues.get(next.tenant);
+            queue.tickets.poll();
+            if (queue.tickets.isEmpty()) {
+                priorityClass.queues.remove(next.tenant);
+            }
+            priorityClass.virtualTime = Math.max(priorityClass.virtualTime, next.start);
+            next.admitted = true;
+            running++;
+            if (next.priority == Priority.BATCH) {
+                batchRunningByTenant.merge(next.tenant, 1, Integer::sum);
+            }
+            granted.add(next);
+        }
+        return granted;
+    }
+
+    /** The head with the smallest finish time among the class's tenants, for BATCH only those below their cap. */
+    private Ticket next(Priority priority) {
+        Ticket next = null;
+        for (Map.Entry<String, TenantQueue> entry : classes.get(priority).queues.entrySet()) {
+            Ticket head = entry.getValue().tickets.peek();
+            if (head != null
+                    && (priority == Priority.INTERACTIVE
+                            || batchRunningByTenant.getOrDefault(entry.getKey(), 0) < tenantConcurrency)
+                    && (next == null || head.finish < next.finish)) {
+                next = head;
+            }
+        }
+        return next;
+    }
+
+    private void grant(List<Ticket> granted) {
+        for (Ticket ticket : granted) {
+            AgentMetrics.recordSince(
+                    metric("wait." + ticket.priority.name().toLowerCase() + ".latency.us"), ticket.enqueuedNanos);
+            ticket.granted.onComplete();
+        }
+    }
+
+    private String metric(String suffix) {
+        return "scheduler." + name + "." + suffix;
+    }
+
+    /** The queues of one priority class and its virtual time. */
+    private static final class PriorityClass {
+        private final Map<String, TenantQueue> queues = new HashMap<>();
+        private double virtualTime;
+    }
+
+    private static final class TenantQueue {
+        private final Deque<Ticket> tickets = new ArrayDeque<>();
+        private double lastFinish;
+    }
+
+    private static final class Ticket {
+        private final String tenant;
+        private final Priority priority;
+        private final long enqueuedNanos = System.nanoTime();
+        private final CompletableSubject granted = CompletableSubject.create();
+        private double start;
+        private double finish;
+        private boolean admitted;
+        private boolean immediate;
+
+        Ticket(String tenant, Priority priority) {
+            this.tenant = tenant;
+            this.priority = priority;
+        }
+    }
+
+    public static class Builder {
+        private final String name;
+        private int maxConcurrency = 16;
+        private int reservedForInteractive = 4;
+        private int tenantConcurrency = 8;
+        private int maxQueuedPerTenant = 1_000;
+        private final Map<String, Double> tenantWeights = new HashMap<>();
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        /** The number of calls that may run at once; 16 by default. */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /** The number of slots BATCH calls may not use; 4 by default. */
+        public Builder reservedForInteractive(int reservedForInteractive) {
+            this.reservedForInteractive = reservedForInteractive;
+            return this;
+        }
+
+        /** The number of BATCH calls one tenant may run at once; 8 by default. */
+        public Builder tenantConcurrency(int tenantConcurrency) {
+            this.tenantConcurrency = tenantConcurrency;
+            return this;
+        }
+
+        /** The number of calls one tenant may queue per class; 1000 by default. */
+        public Builder maxQueuedPerTenant(int maxQueuedPerTenant) {
+            this.maxQueuedPerTenant = maxQueuedPerTenant;
+            return this;
+        }
+
+        /** The share of a tenant relative to the others; tenants have weight 1 by default. */
+        public Builder tenantWeight(String tenant, double weight) {
+            this.tenantWeights.put(tenant, weight);
+            return this;
+        }
+
+        public FairModelScheduler build() {
+            if (maxConcurrency < 1 || reservedForInteractive < 0 || reservedForInteractive >= maxConcurrency
+                    || tenantConcurrency < 1) {
+                throw new IllegalStateException("Invalid scheduler " + name + ": " + maxConcurrency + " slots, "
+                        + reservedForInteractive + " reserved, " + tenantConcurrency + " per tenant");
+            }
+            return new FairModelScheduler(this);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.agent.scheduling;
+
+import com.example.agent.context.CallerLabels;
+import com.example.agent.scheduling.FairModelScheduler.Priority;
+import com.google.adk.models.BaseLlm;
+import com.google.adk.models.BaseLlmConnection;
+import com.google.adk.models.LlmRequest;
+import com.google.adk.models.LlmResponse;
+import io.reactivex.rxjava3.core.Flowable;
+
+/**
+ * Model whose calls are admitted by a {@link FairModelScheduler} in one priority class, each as a call of the
+ * user it is made for.
+ *
+ * ADK does not pass the invocation's user to the model, so the user is read from the {@link CallerLabels} of the
+ * request: a call for user {@code u} is scheduled as tenant {@code <tenant>/u}, so that one user's backlog
+ * cannot starve the app's other users. Calls of agents that do not label their calls are scheduled as
+ * {@code tenant}, typically the app name. Without a scheduler, calls go through the shared scheduler of the
+ * delegate's model. Live connections are not scheduled.
+ */
+public class ScheduledModel extends BaseLlm implements CallerLabels.Reader {
+
+    private final BaseLlm delegate;
+    private final FairModelScheduler scheduler;
+    private final String tenant;
+    private final Priority priority;
+
+    public ScheduledModel(BaseLlm delegate, String tenant, Priority priority) {
+        this(delegate, FairModelScheduler.shared(delegate.model()), tenant, priority);
+    }
+
+    public ScheduledModel(BaseLlm delegate, FairModelScheduler scheduler, String tenant, Priority priority) {
+        super(delegate.model());
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.tenant = tenant;
+        this.priority = priority;
+    }
+
+    @Override
+    public Flowable<LlmResponse> generateContent(LlmRequest llmRequest, boolean stream) {
+        String caller = CallerLabels.caller(llmRequest)
+                .map(CallerLabels.Caller::userId)
+                .map(userId -> tenant + "/" + userId)
+                .orElse(tenant);
+        LlmRequest forwarded = CallerLabels.forward(delegate, llmRequest);
+        return scheduler.schedule(caller, priority, Flowable.defer(() -> delegate.generateContent(forwarded, stream)));
+    }
+
+    @Override
+    public BaseLlmConnection connect(LlmRequest llmRequest) {
+        return delegate.connect(CallerLabels.forward(delegate, llmRequest));
+    }
+}
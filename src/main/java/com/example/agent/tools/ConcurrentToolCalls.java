@@ -0,0 +1,290 @@
+package com.example.agent.tools;
+
+import com.example.agent.metrics.AgentMetrics;
+import com.google.adk.agents.CallbackContext;
+import com.google.adk.agents.Callbacks;
+import com.google.adk.models.LlmResponse;
+import com.google.adk.tools.BaseTool;
+import com.google.adk.tools.ToolContext;
+import com.google.genai.types.Content;
+import com.google.genai.types.FunctionCall;
+import com.google.genai.types.FunctionDeclaration;
+import com.google.genai.types.Part;
+import io.reactivex.rxjava3.core.Maybe;
+import io.reactivex.rxjava3.core.Single;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the function calls returned in a single model turn concurrently on virtual threads.
+ *
+ * ADK executes the function calls of a turn one after another. This class starts all of them as soon as
+ * the model response arrives (from an after-model callback) and hands each result to the matching tool
+ * invocation when ADK gets to it, so the tool phase takes as long as the slowest call instead of the sum.
+ * ADK still assembles the function responses in call order.
+ *
+ * Usage: wrap the tools with {@link #wrap(BaseTool)} and register {@link #afterModelCallback()} on the
+ * same agent. Only wrap tools that do not use their {@link ToolContext}: calls started early run before
+ * ADK has created one, so the delegate is invoked with a {@code null} context.
+ *
+ * Per turn, at most {@code maxConcurrency} calls run at once. Each call is bounded by its tool's timeout,
+ * counted from when it gets to run, not from when it was queued. A call that throws is treated as fatal and
+ * cancels its still-running siblings. Timeouts, failures and cancellations are reported to the model as
+ * {@code status: error} results, like the sample tools do. A result that ADK has not claimed
+ * {@code claimTimeout} after it completed (the turn failed or was cancelled, or ADK skipped the call) is
+ * dropped, so abandoned turns do not accumulate.
+ *
+ * Metrics: {@code tools.turn.latency.us} (tool phase wall time), {@code tools.turn.sequential.us} (sum of
+ * the individual call times, i.e. what running them one by one would have cost), {@code tools.turn.calls},
+ * {@code tools.<name>.latency.us}, {@code tools.<name>.timeout}, {@code tools.turn.cancelled} and
+ * {@code tools.turn.unclaimed}.
+ */
+public class ConcurrentToolCalls {
+
+    private static final String ID_PREFIX = "adk-";
+
+    private final int maxConcurrency;
+    private final Duration defaultTimeout;
+    private final Duration claimTimeout;
+    private final Map<String, Duration> toolTimeouts;
+    private final Map<String, BaseTool> tools = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Map<String, Object>>> pendingByCallId =
+            new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private ConcurrentToolCalls(Builder builder) {
+        this.maxConcurrency = builder.maxConcurrency;
+        this.defaultTimeout = builder.defaultTimeout;
+        this.claimTimeout = builder.claimTimeout;
+        this.toolTimeouts = Map.copyOf(builder.toolTimeouts);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Registers a tool whose calls may be started concurrently and returns the tool to give to the agent. */
+    public BaseTool wrap(BaseTool tool) {
+        tools.put(tool.name(), tool);
+        return new ConcurrentTool(tool);
+    }
+
+    public Callbacks.AfterModelCallback afterModelCallback() {
+        return this::startTurn;
+    }
+
+    private Maybe<LlmResponse> startTurn(CallbackContext callbackContext, LlmResponse llmResponse) {
+        if (llmResponse.partial().orElse(false) || llmResponse.content().isEmpty()) {
+            return Maybe.empty();
+        }
+        Content content = llmResponse.content().get();
+        List<Part> parts = content.parts().orElse(List.of());
+        long concurrentCalls = parts.stream()
+                .flatMap(part -> part.functionCall().stream())
+                .filter(call -> call.name().map(tools::containsKey).orElse(false))
+                .count();
+        if (concurrentCalls < 2) {
+            return Maybe.empty();
+        }
+
+        // ADK only assigns ids to function calls after this callback; assign them here so each early
+        // result can be matched to its tool invocation. The "adk-" prefix keeps them client-side only.
+        boolean idsAssigned = false;
+        List<Part> rewrittenParts = new ArrayList<>(parts.size());
+        Turn turn = new Turn();
+        for (Part part : parts) {
+            Optional<FunctionCall> functionCall = part.functionCall();
+            if (functionCall.isEmpty() || !functionCall.get().name().map(tools::containsKey).orElse(false)) {
+                rewrittenParts.add(part);
+                continue;
+            }
+            FunctionCall call = functionCall.get();
+            if (call.id().isEmpty()) {
+                call = call.toBuilder().id(ID_PREFIX + UUID.randomUUID()).build();
+                part = part.toBuilder().functionCall(call).build();
+                idsAssigned = true;
+            }
+            rewrittenParts.add(part);
+            turn.start(call.id().get(), call);
+        }
+        turn.launched();
+
+        return idsAssigned
+                ? Maybe.just(llmResponse.toBuilder().content(content.toBuilder().parts(rewrittenParts).build()).build())
+                : Maybe.empty();
+    }
+
+    private Duration timeoutFor(String toolName) {
+        return toolTimeouts.getOrDefault(toolName, defaultTimeout);
+    }
+
+    private static Map<String, Object> error(String report) {
+        return Map.of("status", "error", "report", report);
+    }
+
+    /** The calls started for one model response. */
+    private class Turn {
+        private final long startNanos = System.nanoTime();
+        private final Semaphore permits = new Semaphore(maxConcurrency);
+        private final List<Call> calls = new ArrayList<>();
+        private final AtomicInteger remaining = new AtomicInteger(1);
+        private final AtomicLong sequentialMicros = new AtomicLong();
+
+        synchronized void start(String callId, FunctionCall functionCall) {
+            String toolName = functionCall.name().get();
+            BaseTool tool = tools.get(toolName);
+            Map<String, Object> args = functionCall.args().orElse(Map.of());
+            Map<String, Object> timedOut = error("Tool " + toolName + " timed out after " + timeoutFor(toolName) + ".");
+
+            Call call = new Call();
+            remaining.incrementAndGet();
+            call.future = executor.submit(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // The timeout only covers running the call, not waiting for a permit
+                call.result.completeOnTimeout(timedOut, timeoutFor(toolName).toMillis(), TimeUnit.MILLISECONDS);
+                long start = System.nanoTime();
+                try {
+                    call.result.complete(tool.runAsync(args, null).blockingGet());
+                } catch (RuntimeException e) {
+                    if (!call.result.isDone()) {
+                        call.result.complete(error("Tool " + toolName + " failed: " + e.getMessage()));
+                        cancelSiblings(call);
+                    }
+                } finally {
+                    permits.release();
+                    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+                    sequentialMicros.addAndGet(micros);
+                    AgentMetrics.record("tools." + toolName + ".latency.us", micros);
+                }
+            });
+            pendingByCallId.put(callId, call.result);
+            call.result.whenComplete((result, failure) -> {
+                if (result == timedOut) {
+                    AgentMetrics.increment("tools." + toolName + ".timeout");
+                    call.future.cancel(true);
+                }
+                finished();
+                CompletableFuture.delayedExecutor(claimTimeout.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+                    if (pendingByCallId.remove(callId, call.result)) {
+                        AgentMetrics.increment("tools.turn.unclaimed");
+                    }
+                });
+            });
+            calls.add(call);
+        }
+
+        /** Called once every call of the turn has been submitted. */
+        void launched() {
+            AgentMetrics.record("tools.turn.calls", calls.size());
+            finished();
+        }
+
+        private synchronized void cancelSiblings(Call failed) {
+            for (Call call : calls) {
+                // Complete first: an interrupted tool may still finish and must not win the race for the result
+                if (call != failed
+                        && call.result.complete(error("Cancelled because another tool call in the same turn failed."))) {
+                    AgentMetrics.increment("tools.turn.cancelled");
+                    call.future.cancel(true);
+                }
+            }
+        }
+
+        private void finished() {
+            if (remaining.decrementAndGet() == 0) {
+                AgentMetrics.recordSince("tools.turn.latency.us", startNanos);
+                AgentMetrics.record("tools.turn.sequential.us", sequentialMicros.get());
+            }
+        }
+    }
+
+    private static class Call {
+        final CompletableFuture<Map<String, Object>> result = new CompletableFuture<>();
+        volatile Future<?> future;
+    }
+
+    /** Tool handed to the agent: returns the early result when one was started for this call. */
+    private class ConcurrentTool extends BaseTool {
+        private final BaseTool delegate;
+
+        ConcurrentTool(BaseTool delegate) {
+            super(delegate.name(), delegate.description());
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Optional<FunctionDeclaration> declaration() {
+            return delegate.declaration();
+        }
+
+        @Override
+        public Single<Map<String, Object>> runAsync(Map<String, Object> args, ToolContext toolContext) {
+            CompletableFuture<Map<String, Object>> started =
+                    toolContext.functionCallId().map(pendingByCallId::remove).orElse(null);
+            if (started != null) {
+                return Single.fromCompletionStage(started);
+            }
+            Duration timeout = timeoutFor(name());
+            return delegate.runAsync(args, toolContext)
+                    .timeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .onErrorReturn(failure -> failure instanceof TimeoutException
+                            ? error("Tool " + name() + " timed out after " + timeout + ".")
+                            : error("Tool " + name() + " failed: " + failure.getMessage()));
+        }
+    }
+
+    public static class Builder {
+        private int maxConcurrency = 8;
+        private Duration defaultTimeout = Duration.ofSeconds(30);
+        private Duration claimTimeout = Duration.ofMinutes(1);
+        private final Map<String, Duration> toolTimeouts = new HashMap<>();
+
+        private Builder() {}
+
+        /** Maximum number of calls from the same turn that run at the same time. */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public Builder defaultTimeout(Duration defaultTimeout) {
+            this.defaultTimeout = defaultTimeout;
+            return this;
+        }
+
+        /** How long a completed result waits for ADK to claim it before it is dropped; 1 minute by default. */
+        public Builder claimTimeout(Duration claimTimeout) {
+            this.claimTimeout = claimTimeout;
+            return this;
+        }
+
+        public Builder timeout(String toolName, Duration timeout) {
+            this.toolTimeouts.put(toolName, timeout);
+            return this;
+        }
+
+        public ConcurrentToolCalls build() {
+            return new ConcurrentToolCalls(this);
+        }
+    }
+}
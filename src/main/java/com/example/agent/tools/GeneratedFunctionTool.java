@@ -0,0 +1,95 @@
+package com.example.agent.tools;
+
+import com.google.adk.tools.BaseTool;
+import com.google.adk.tools.ToolContext;
+import com.google.genai.types.FunctionDeclaration;
+import io.reactivex.rxjava3.core.Single;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A tool whose declaration and invoker are generated at compile time by
+ * {@link com.example.agent.tools.processor.FunctionToolProcessor} from a {@code @Schema}-annotated static method.
+ *
+ * Unlike {@code FunctionTool}, nothing is discovered by reflection: the declaration is a constant of the
+ * generated {@code <Class>Tools} class and a call is a direct call of the method with its arguments taken from
+ * the model's argument map by the static accessors below. A missing or mistyped argument fails the call with
+ * an {@link IllegalArgumentException}.
+ */
+public final class GeneratedFunctionTool extends BaseTool {
+
+    /** Calls the tool method; generated as a lambda that unpacks the arguments. */
+    @FunctionalInterface
+    public interface Invoker {
+        Map<String, ?> invoke(Map<String, Object> args, ToolContext toolContext) throws Exception;
+    }
+
+    private final FunctionDeclaration declaration;
+    private final Invoker invoker;
+
+    public GeneratedFunctionTool(FunctionDeclaration declaration, Invoker invoker) {
+        super(declaration.name().orElseThrow(), declaration.description().orElse(""));
+        this.declaration = declaration;
+        this.invoker = invoker;
+    }
+
+    @Override
+    public Optional<FunctionDeclaration> declaration() {
+        return Optional.of(declaration);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Single<Map<String, Object>> runAsync(Map<String, Object> args, ToolContext toolContext) {
+        return Single.fromCallable(() -> (Map<String, Object>) invoker.invoke(args, toolContext));
+    }
+
+    // --- Argument accessors used by the generated invokers ---
+
+    public static String string(Map<String, Object> args, String name) {
+        return argument(args, name, String.class);
+    }
+
+    public static boolean booleanValue(Map<String, Object> args, String name) {
+        return argument(args, name, Boolean.class);
+    }
+
+    public static int intValue(Map<String, Object> args, String name) {
+        return argument(args, name, Number.class).intValue();
+    }
+
+    public static long longValue(Map<String, Object> args, String name) {
+        return argument(args, name, Number.class).longValue();
+    }
+
+    public static double doubleValue(Map<String, Object> args, String name) {
+        return argument(args, name, Number.class).doubleValue();
+    }
+
+    public static float floatValue(Map<String, Object> args, String name) {
+        return argument(args, name, Number.class).floatValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> list(Map<String, Object> args, String name) {
+        return argument(args, name, List.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> map(Map<String, Object> args, String name) {
+        return argument(args, name, Map.class);
+    }
+
+    private static <T> T argument(Map<String, Object> args, String name, Class<T> type) {
+        Object value = args.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing argument: " + name);
+        }
+        if (!type.isInstance(value)) {
+            throw new IllegalArgumentException("Argument " + name + " must be a " + type.getSimpleName()
+                    + ", got " + value.getClass().getSimpleName());
+        }
+        return type.cast(value);
+    }
+}
@@ -0,0 +1,350 @@
+package com.example.agent.tools.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the function declarations and direct-call invokers of {@code @Schema}-annotated tool methods, so
+ * agents get their tools without {@code FunctionTool}'s reflection at startup and per call.
+ *
+ * For each class declaring such methods, a {@code <Class>Tools} class is generated in the same package with one
+ * factory per method, named after it: {@code MultiToolAgentTools.getWeather()} replaces
+ * {@code FunctionTool.create(MultiToolAgent.class, "getWeather")}. The factory returns a
+ * {@link com.example.agent.tools.GeneratedFunctionTool} whose declaration is a constant built from the method's
+ * and parameters' {@code @Schema} names and descriptions, and whose invoker calls the method.
+ *
+ * Mistakes that {@code FunctionTool} only reports when the agent is created are compile errors: the method must
+ * be public and static and return a {@code Map<String, ?>}, and each parameter must be a {@code ToolContext} or
+ * a String, boolean, int, long, float, double, a {@code List} of those or a {@code Map<String, ?>}, with a name
+ * that is unique within the method. Parameters without a {@code @Schema} name use the Java parameter name.
+ */
+@SupportedAnnotationTypes(FunctionToolProcessor.SCHEMA)
+public class FunctionToolProcessor extends AbstractProcessor {
+
+    static final String SCHEMA = "com.google.adk.tools.Annotations.Schema";
+    private static final String TOOL_CONTEXT = "com.google.adk.tools.ToolContext";
+    private static final String GENERATED_TOOL = "com.example.agent.tools.GeneratedFunctionTool";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement schema = processingEnv.getElementUtils().getTypeElement(SCHEMA);
+        if (schema == null || annotations.isEmpty()) {
+            return false;
+        }
+        Map<TypeElement, List<ExecutableElement>> methodsByClass = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(schema)) {
+            if (element.getKind() == ElementKind.METHOD) {
+                methodsByClass.computeIfAbsent((TypeElement) element.getEnclosingElement(), type -> new ArrayList<>())
+                        .add((ExecutableElement) element);
+            }
+        }
+        methodsByClass.forEach((type, methods) -> {
+            List<ToolMethod> tools = new ArrayList<>();
+            for (ExecutableElement method : methods) {
+                ToolMethod tool = toolMethod(method);
+                if (tool != null) {
+                    tools.add(tool);
+                }
+            }
+            if (tools.size() == methods.size()) {
+                write(type, tools);
+            }
+        });
+        // Other processors may still want to see @Schema
+        return false;
+    }
+
+    /** Validates one tool method; reports the problems and returns null if it cannot be generated. */
+    private ToolMethod toolMethod(ExecutableElement method) {
+        Messager messager = processingEnv.getMessager();
+        boolean valid = true;
+        if (!method.getModifiers().containsAll(Set.of(Modifier.PUBLIC, Modifier.STATIC))) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Tool methods must be public and static", method);
+            valid = false;
+        }
+        if (!isMap(method.getReturnType())) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Tool methods must return a Map<String, ?>", method);
+            valid = false;
+        }
+
+        AnnotationMirror methodSchema = schema(method);
+        String name = value(methodSchema, "name");
+        List<Parameter> parameters = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (VariableElement element : method.getParameters()) {
+            if (isType(element.asType(), TOOL_CONTEXT)) {
+                parameters.add(new Parameter(null, null, null));
+                continue;
+            }
+            AnnotationMirror parameterSchema = schema(element);
+            String parameterName = value(parameterSchema, "name");
+            if (parameterName.isEmpty()) {
+                parameterName = element.getSimpleName().toString();
+            }
+            if (!names.add(parameterName)) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Duplicate parameter name " + parameterName, element);
+                valid = false;
+            }
+            String accessor = accessor(element.asType());
+            String declaration = schemaType(element.asType(), value(parameterSchema, "description"));
+            if (accessor == null || declaration == null) {
+                messager.printMessage(Diagnostic.Kind.ERROR,
+                        "Unsupported tool parameter type " + element.asType(), element);
+                valid = false;
+            }
+            parameters.add(new Parameter(parameterName, accessor, declaration));
+        }
+        if (!valid) {
+            return null;
+        }
+        String methodName = method.getSimpleName().toString();
+        return new ToolMethod(methodName, name.isEmpty() ? methodName : name, value(methodSchema, "description"),
+                parameters);
+    }
+
+    private void write(TypeElement type, List<ToolMethod> tools) {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String className = binaryName(type, packageName) + "Tools";
+        String owner = type.getQualifiedName().toString();
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("/** Tools generated from the {@code @Schema} methods of {@link ").append(owner)
+                .append("}; do not edit. */\n")
+                .append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(className).append(" {\n\n");
+        for (ToolMethod tool : tools) {
+            source.append("    private static final com.google.genai.types.FunctionDeclaration ")
+                    .append(constant(tool.method())).append(" =\n")
+                    .append("            ").append(declaration(tool)).append(";\n\n");
+        }
+        source.append("    private ").append(className).append("() {}\n");
+        for (ToolMethod tool : tools) {
+            List<String> arguments = new ArrayList<>();
+            for (Parameter parameter : tool.parameters()) {
+                arguments.add(parameter.name() == null
+                        ? "toolContext"
+                        : GENERATED_TOOL + "." + parameter.accessor() + "(args, " + literal(parameter.name()) + ")");
+            }
+            source.append("\n    /** The {@code ").append(tool.name()).append("} tool, calling {@link ").append(owner)
+                    .append("#").append(tool.method()).append("}. */\n")
+                    .append("    public static com.google.adk.tools.BaseTool ").append(tool.method()).append("() {\n")
+                    .append("        return new ").append(GENERATED_TOOL).append("(").append(constant(tool.method()))
+                    .append(",\n                (args, toolContext) -> ").append(owner).append(".")
+                    .append(tool.method()).append("(")
+                    .append(arguments.isEmpty() ? "" : "\n                        ")
+                    .append(String.join(",\n                        ", arguments)).append("));\n")
+                    .append("    }\n");
+        }
+        source.append("}\n");
+
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Cannot write " + qualifiedName + ": " + e.getMessage(), type);
+        }
+    }
+
+    private static String declaration(ToolMethod tool) {
+        StringBuilder declaration = new StringBuilder("com.google.genai.types.FunctionDeclaration.builder()")
+                .append(".name(").append(literal(tool.name())).append(")")
+                .append(".description(").append(literal(tool.description())).append(")");
+        List<String> properties = new ArrayList<>();
+        List<String> required = new ArrayList<>();
+        for (Parameter parameter : tool.parameters()) {
+            if (parameter.name() != null) {
+                properties.add("java.util.Map.entry(" + literal(parameter.name()) + ", " + parameter.declaration() + ")");
+                required.add(literal(parameter.name()));
+            }
+        }
+        if (!properties.isEmpty()) {
+            declaration.append("\n                    .parameters(com.google.genai.types.Schema.builder().type(\"OBJECT\")")
+                    .append("\n                            .properties(java.util.Map.ofEntries(\n                                    ")
+                    .append(String.join(",\n                                    ", properties)).append("))")
+                    .append("\n                            .required(java.util.List.of(")
+                    .append(String.join(", ", required)).append(")).build())");
+        }
+        return declaration.append(".build()").toString();
+    }
+
+    /** The generated Schema expression for a parameter type, or null when the type is not supported. */
+    private String schemaType(TypeMirror type, String description) {
+        String schema = "com.google.genai.types.Schema.builder()";
+        String suffix = description.isEmpty() ? ".build()" : ".description(" + literal(description) + ").build()";
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return schema + ".type(\"BOOLEAN\")" + suffix;
+            case INT: case LONG:
+                return schema + ".type(\"INTEGER\")" + suffix;
+            case FLOAT: case DOUBLE:
+                return schema + ".type(\"NUMBER\")" + suffix;
+            default:
+                break;
+        }
+        if (isType(type, "java.lang.String")) {
+            return schema + ".type(\"STRING\")" + suffix;
+        }
+        if (isType(type, "java.lang.Boolean")) {
+            return schema + ".type(\"BOOLEAN\")" + suffix;
+        }
+        if (isType(type, "java.lang.Integer") || isType(type, "java.lang.Long")) {
+            return schema + ".type(\"INTEGER\")" + suffix;
+        }
+        if (isType(type, "java.lang.Float") || isType(type, "java.lang.Double")) {
+            return schema + ".type(\"NUMBER\")" + suffix;
+        }
+        if (isMap(type)) {
+            return schema + ".type(\"OBJECT\")" + suffix;
+        }
+        if (isType(type, "java.util.List")) {
+            List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+            String items = typeArguments.size() == 1 && accessor(typeArguments.get(0)) != null
+                    && !isType(typeArguments.get(0), "java.util.List")
+                    ? schemaType(typeArguments.get(0), "")
+                    : null;
+            return items == null ? null : schema + ".type(\"ARRAY\").items(" + items + ")" + suffix;
+        }
+        return null;
+    }
+
+    /** The {@code GeneratedFunctionTool} accessor reading an argument of this type, or null if unsupported. */
+    private String accessor(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "booleanValue";
+            case INT:
+                return "intValue";
+            case LONG:
+                return "longValue";
+            case FLOAT:
+                return "floatValue";
+            case DOUBLE:
+                return "doubleValue";
+            default:
+                break;
+        }
+        if (isType(type, "java.lang.String")) {
+            return "string";
+        }
+        if (isType(type, "java.lang.Boolean")) {
+            return "booleanValue";
+        }
+        if (isType(type, "java.lang.Integer")) {
+            return "intValue";
+        }
+        if (isType(type, "java.lang.Long")) {
+            return "longValue";
+        }
+        if (isType(type, "java.lang.Float")) {
+            return "floatValue";
+        }
+        if (isType(type, "java.lang.Double")) {
+            return "doubleValue";
+        }
+        if (isType(type, "java.util.List")) {
+            return "list";
+        }
+        return isMap(type) ? "map" : null;
+    }
+
+    private boolean isMap(TypeMirror type) {
+        if (!isType(type, "java.util.Map")) {
+            return false;
+        }
+        List<? extends TypeMirror> typeArguments = ((DeclaredType) type).getTypeArguments();
+        return typeArguments.size() == 2 && isType(typeArguments.get(0), "java.lang.String");
+    }
+
+    private static boolean isType(TypeMirror type, String qualifiedName) {
+        return type.getKind() == TypeKind.DECLARED
+                && ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(qualifiedName);
+    }
+
+    private static AnnotationMirror schema(Element element) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(SCHEMA)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /** A string attribute of {@code @Schema}; empty when the annotation or attribute is absent. */
+    private static String value(AnnotationMirror annotation, String attribute) {
+        if (annotation == null) {
+            return "";
+        }
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : annotation.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(attribute)) {
+                return String.valueOf(entry.getValue().getValue());
+            }
+        }
+        return "";
+    }
+
+    /** Nested classes are generated as {@code Outer_InnerTools}. */
+    private static String binaryName(TypeElement type, String packageName) {
+        String qualifiedName = type.getQualifiedName().toString();
+        String name = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+        return name.replace('.', '_');
+    }
+
+    private static String constant(String method) {
+        return method.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase() + "_DECLARATION";
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\r' -> literal.append("\\r");
+                case '\t' -> literal.append("\\t");
+                default -> literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    /** A tool parameter; {@code name} is null for the {@code ToolContext}. */
+    private record Parameter(String name, String accessor, String declaration) {}
+
+    private record ToolMethod(String method, String name, String description, List<Parameter> parameters) {}
+}
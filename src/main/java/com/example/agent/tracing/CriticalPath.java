@@ -0,0 +1,180 @@
+package com.example.agent.tracing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The chain of spans that determined the end-to-end latency of one agent run.
+ *
+ * The path is computed backwards from the end of the root span: within a span, the child that finished last
+ * is on the path, then the child that finished last before that child started, and so on; time not covered
+ * by such a child is the span's own ("self") time. Shortening a span off the path does not shorten the run.
+ *
+ * For parallel children the report also names the siblings that were waited for and their slack (how much
+ * earlier they finished than the child on the path), and for {@code LoopAgent} children it breaks the time
+ * down per iteration.
+ */
+public final class CriticalPath {
+
+    /** A span on the path, its nesting depth and the time it contributed itself, excluding its children. */
+    public record Step(Span span, int depth, long selfNanos) {}
+
+    /** A span whose children overlapped: {@code blocking} was on the path, the others finished earlier. */
+    public record Wait(Span parent, Span blocking, Map<Span, Long> slackNanos) {}
+
+    private final Span root;
+    private final List<Step> steps;
+    private final List<Wait> waits;
+    private final List<Span> spans;
+
+    private CriticalPath(Span root, List<Step> steps, List<Wait> waits, List<Span> spans) {
+        this.root = root;
+        this.steps = steps;
+        this.waits = waits;
+        this.spans = spans;
+    }
+
+    public static CriticalPath analyze(List<Span> spans) {
+        Map<String, List<Span>> children = new HashMap<>();
+        Span root = null;
+        for (Span span : spans) {
+            if (span.parentSpanId() == null) {
+                root = span;
+            } else {
+                children.computeIfAbsent(span.parentSpanId(), id -> new ArrayList<>()).add(span);
+            }
+        }
+        if (root == null) {
+            throw new IllegalArgumentException("Trace has no root span");
+        }
+        List<Step> steps = new ArrayList<>();
+        List<Wait> waits = new ArrayList<>();
+        walk(root, 0, root.endNanos(), children, steps, waits);
+        // The walk goes backwards in time
+        Collections.reverse(steps);
+        Collections.reverse(waits);
+        return new CriticalPath(root, List.copyOf(steps), List.copyOf(waits), List.copyOf(spans));
+    }
+
+    private static void walk(Span span, int depth, long until, Map<String, List<Span>> children, List<Step> steps,
+            List<Wait> waits) {
+        List<Span> remaining = new ArrayList<>(children.getOrDefault(span.spanId(), List.of()));
+        remaining.sort(Comparator.comparingLong(Span::endNanos).reversed());
+        long cursor = Math.min(span.endNanos(), until);
+        long self = 0;
+        while (true) {
+            Span next = null;
+            for (Span child : remaining) {
+                if (child.endNanos() <= cursor) {
+                    next = child;
+                    break;
+                }
+            }
+            if (next == null) {
+                self += Math.max(0, cursor - span.startNanos());
+                break;
+            }
+            self += cursor - next.endNanos();
+            Map<Span, Long> slack = new LinkedHashMap<>();
+            for (Span sibling : remaining) {
+                if (sibling != next && sibling.endNanos() <= next.endNanos() && sibling.endNanos() > next.startNanos()) {
+                    slack.put(sibling, next.endNanos() - sibling.endNanos());
+                }
+            }
+            if (!slack.isEmpty()) {
+                waits.add(new Wait(span, next, slack));
+            }
+            remaining.remove(next);
+            walk(next, depth + 1, cursor, children, steps, waits);
+            cursor = next.startNanos();
+        }
+        // Steps are collected backwards, so the span goes after its children to read first once reversed
+        steps.add(new Step(span, depth, self));
+    }
+
+    public Span root() {
+        return root;
+    }
+
+    public long durationNanos() {
+        return root.durationNanos();
+    }
+
+    /** Spans on the path in start order. */
+    public List<Step> steps() {
+        return steps;
+    }
+
+    public List<Wait> waits() {
+        return waits;
+    }
+
+    /**
+     * Time per agent, model and tool in each iteration of each {@code LoopAgent}, keyed by loop agent name and
+     * then iteration number.
+     */
+    public Map<String, Map<Integer, Map<String, Long>>> loopIterations() {
+        Map<String, Span> byId = new HashMap<>();
+        for (Span span : spans) {
+            byId.put(span.spanId(), span);
+        }
+        Map<String, Map<Integer, Map<String, Long>>> loops = new LinkedHashMap<>();
+        List<Span> ordered = new ArrayList<>(spans);
+        ordered.sort(Comparator.comparingLong(Span::startNanos));
+        for (Span span : ordered) {
+            // Find the loop iteration an agent, model or tool span belongs to
+            Span iterationSpan = span;
+            while (iterationSpan != null && !iterationSpan.attributes().containsKey("loop.iteration")) {
+                iterationSpan = iterationSpan.parentSpanId() == null ? null : byId.get(iterationSpan.parentSpanId());
+            }
+            if (iterationSpan == null || (span != iterationSpan && span.kind() != Span.Kind.TOOL)) {
+                continue;
+            }
+            Span loop = byId.get(iterationSpan.parentSpanId());
+            int iteration = ((Number) iterationSpan.attributes().get("loop.iteration")).intValue();
+            loops.computeIfAbsent(loop.agentName(), name -> new TreeMap<>())
+                    .computeIfAbsent(iteration, i -> new LinkedHashMap<>())
+                    .merge(span.label(), span.durationNanos(), Long::sum);
+        }
+        return loops;
+    }
+
+    /** Human-readable report of the path, the parallel waits and the loop iterations. */
+    public String format() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Critical path of %s (trace %s): %s end to end%n",
+                root.agentName(), root.traceId(), millis(durationNanos())));
+        report.append(String.format("  %10s  %10s  %s%n", "self", "span", "name"));
+        for (Step step : steps) {
+            report.append(String.format("  %10s  %10s  %s%s%s%n", millis(step.selfNanos()),
+                    millis(step.span().durationNanos()), "  ".repeat(step.depth()), step.span().label(),
+                    step.span().error() == null ? "" : " [error: " + step.span().error() + "]"));
+        }
+        for (Wait wait : waits) {
+            report.append(String.format("%s waited on %s", wait.parent().label(), wait.blocking().label()));
+            List<String> others = new ArrayList<>();
+            wait.slackNanos().forEach((sibling, slack) ->
+                    others.add(sibling.label() + " by " + millis(slack)));
+            report.append(" (finished earlier: ").append(String.join(", ", others)).append(")\n");
+        }
+        loopIterations().forEach((loop, iterations) -> {
+            report.append(loop).append(" iterations:\n");
+            iterations.forEach((iteration, times) -> {
+                report.append(String.format("  #%-3d", iteration));
+                times.forEach((label, nanos) -> report.append("  ").append(label).append(' ').append(millis(nanos)));
+                report.append('\n');
+            });
+        });
+        return report.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1f ms", nanos / 1_000_000.0);
+    }
+}
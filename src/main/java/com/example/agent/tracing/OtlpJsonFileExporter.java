@@ -0,0 +1,93 @@
+package com.example.agent.tracing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import tools.jackson.databind.json.JsonMapper;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Appends each run as one line of OTLP-JSON ({@code ExportTraceServiceRequest}) to a local file.
+ *
+ * This is the format of the OpenTelemetry collector's file exporter, so the file can be replayed into any
+ * OTLP backend (e.g. with the collector's {@code otlpjsonfile} receiver) or read directly by Jaeger and
+ * similar tools. Trace and span ids are hex encoded and times are Unix epoch nanoseconds, as the spec requires.
+ */
+public class OtlpJsonFileExporter implements SpanExporter {
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int STATUS_CODE_ERROR = 2;
+
+    private final Path file;
+
+    public OtlpJsonFileExporter(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized void export(String serviceName, List<Span> spans) {
+        List<Map<String, Object>> otlpSpans = new ArrayList<>(spans.size());
+        for (Span span : spans) {
+            otlpSpans.add(toOtlp(span));
+        }
+        Map<String, Object> request = Map.of("resourceSpans", List.of(Map.of(
+                "resource", Map.of("attributes", attributes(Map.of("service.name", serviceName))),
+                "scopeSpans", List.of(Map.of(
+                        "scope", Map.of("name", Tracer.class.getPackageName()),
+                        "spans", otlpSpans)))));
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.writeString(file, JSON.writeValueAsString(request) + "\n", UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write traces to " + file, e);
+        }
+    }
+
+    private static Map<String, Object> toOtlp(Span span) {
+        Map<String, Object> otlp = new LinkedHashMap<>();
+        otlp.put("traceId", span.traceId());
+        otlp.put("spanId", span.spanId());
+        if (span.parentSpanId() != null) {
+            otlp.put("parentSpanId", span.parentSpanId());
+        }
+        otlp.put("name", span.name() + " " + (span.kind() == Span.Kind.TOOL ? span.label() : span.agentName()));
+        otlp.put("kind", SPAN_KIND_INTERNAL);
+        otlp.put("startTimeUnixNano", Long.toString(span.startNanos()));
+        otlp.put("endTimeUnixNano", Long.toString(span.endNanos()));
+        otlp.put("attributes", attributes(span.attributes()));
+        otlp.put("status", span.error() == null
+                ? Map.of()
+                : Map.of("code", STATUS_CODE_ERROR, "message", span.error()));
+        return otlp;
+    }
+
+    private static List<Map<String, Object>> attributes(Map<String, Object> values) {
+        List<Map<String, Object>> attributes = new ArrayList<>(values.size());
+        values.forEach((key, value) -> attributes.add(Map.of("key", key, "value", anyValue(value))));
+        return attributes;
+    }
+
+    private static Map<String, Object> anyValue(Object value) {
+        return switch (value) {
+            // int64 values are strings in OTLP-JSON
+            case Integer i -> Map.of("intValue", Integer.toString(i));
+            case Long l -> Map.of("intValue", Long.toString(l));
+            case Boolean b -> Map.of("boolValue", b);
+            case Double d -> Map.of("doubleValue", d);
+            default -> Map.of("stringValue", String.valueOf(value));
+        };
+    }
+}
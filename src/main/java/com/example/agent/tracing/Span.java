@@ -0,0 +1,112 @@
+package com.example.agent.tracing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One timed operation of an agent run: an agent invocation, a model call or a tool call.
+ *
+ * Times are Unix epoch nanoseconds, derived from {@link System#nanoTime()} so that durations are monotonic.
+ * A span is mutable until {@link #end(long)} is called by the {@link Tracer}; afterwards it is only read.
+ */
+public final class Span {
+
+    public enum Kind {
+        AGENT,
+        MODEL,
+        TOOL
+    }
+
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final Kind kind;
+    private final String name;
+    private final String agentName;
+    private final long startNanos;
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+    private volatile long endNanos;
+    private volatile String error;
+
+    Span(String traceId, String spanId, String parentSpanId, Kind kind, String name, String agentName,
+            long startNanos) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.kind = kind;
+        this.name = name;
+        this.agentName = agentName;
+        this.startNanos = startNanos;
+    }
+
+    public String traceId() {
+        return traceId;
+    }
+
+    public String spanId() {
+        return spanId;
+    }
+
+    /** The enclosing span, or {@code null} for the root agent of the run. */
+    public String parentSpanId() {
+        return parentSpanId;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    /** The operation name, following the GenAI conventions: {@code invoke_agent}, {@code call_llm} or {@code execute_tool}. */
+    public String name() {
+        return name;
+    }
+
+    /** The agent that ran this span. */
+    public String agentName() {
+        return agentName;
+    }
+
+    /** Short label for reports, e.g. {@code EVResearcher}, {@code call_llm EVResearcher} or {@code exitLoop}. */
+    public String label() {
+        return switch (kind) {
+            case AGENT -> agentName;
+            case MODEL -> name + " " + agentName;
+            case TOOL -> String.valueOf(attributes.get("gen_ai.tool.name"));
+        };
+    }
+
+    public long startNanos() {
+        return startNanos;
+    }
+
+    public long endNanos() {
+        return endNanos;
+    }
+
+    public long durationNanos() {
+        return endNanos - startNanos;
+    }
+
+    public synchronized Map<String, Object> attributes() {
+        return Map.copyOf(attributes);
+    }
+
+    public String error() {
+        return error;
+    }
+
+    synchronized Span attribute(String key, Object value) {
+        if (value != null) {
+            attributes.put(key, value);
+        }
+        return this;
+    }
+
+    void fail(String message) {
+        this.error = message;
+    }
+
+    void end(long endNanos) {
+        this.endNanos = endNanos;
+    }
+}
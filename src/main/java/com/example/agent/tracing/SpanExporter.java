@@ -0,0 +1,13 @@
+package com.example.agent.tracing;
+
+import java.util.List;
+
+/** Receives the finished spans of one agent run from the {@link Tracer}. */
+@FunctionalInterface
+public interface SpanExporter {
+
+    /** Discards spans; the tracer still computes critical paths. */
+    SpanExporter NONE = (serviceName, spans) -> {};
+
+    void export(String serviceName, List<Span> spans);
+}
@@ -0,0 +1,439 @@
+package com.example.agent.tracing;
+
+import com.example.agent.agents.DataflowSequentialAgent;
+import com.example.agent.agents.QuorumParallelAgent;
+import com.example.agent.metrics.AgentMetrics;
+import com.google.adk.agents.BaseAgent;
+import com.google.adk.agents.CallbackContext;
+import com.google.adk.agents.Callbacks;
+import com.google.adk.agents.LlmAgent;
+import com.google.adk.agents.LoopAgent;
+import com.google.adk.agents.ParallelAgent;
+import com.google.adk.agents.SequentialAgent;
+import com.google.adk.models.LlmResponse;
+import com.google.adk.tools.BaseTool;
+import com.google.adk.tools.ToolContext;
+import com.google.genai.types.Content;
+import io.reactivex.rxjava3.core.Maybe;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records agent, model-call and tool-call spans of agent runs through ADK callbacks.
+ *
+ * Spans are not carried in thread-locals: ADK runs sub-agents, models and tools on whatever thread their
+ * {@code Flowable} is subscribed on, and {@code ParallelAgent} interleaves its branches. Instead every
+ * callback identifies its span by invocation id plus agent name (plus function call id for tools), and the
+ * parent of an agent span is found from the agent tree given to {@link #register(BaseAgent)}. An agent never
+ * runs concurrently with itself within one invocation, so this is unambiguous, including across the
+ * iterations of a {@code LoopAgent}, whose children are tagged with a {@code loop.iteration} attribute.
+ *
+ * When the root agent of an invocation finishes, spans still open (sub-agents cancelled by a
+ * {@code QuorumParallelAgent}, model calls whose after-callback never ran) are ended as cancelled, and the
+ * spans are analysed with {@link CriticalPath}; the latest result is available from {@link #lastCriticalPath()}.
+ * They are then handed to the {@link SpanExporter} on a background thread, off the run's path.
+ *
+ * ADK calls no agent callback when a run fails or is cancelled, so the trace of such a run never finishes.
+ * Traces are therefore expired: one still open {@code maxTraceAge} after it started, or the oldest one when
+ * {@code maxTraces} are open, is exported with its open spans ended and marked as abandoned, and counted in
+ * {@code tracing.expired}. It is not analysed. Expiry is checked when a run starts.
+ *
+ * Usage: pass every agent builder through one of the {@code instrument} methods, then register the root.
+ */
+public class Tracer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Tracer.class);
+
+    // Offset from System.nanoTime() to Unix epoch nanoseconds, so span times are monotonic and absolute
+    private static final long EPOCH_OFFSET_NANOS = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+    private static final Duration DEFAULT_MAX_TRACE_AGE = Duration.ofMinutes(10);
+    private static final int DEFAULT_MAX_TRACES = 10_000;
+    private static final long EXPIRY_INTERVAL_NANOS = 1_000_000_000L;
+
+    // One thread for all tracers, so exports are written in order; drained when the JVM exits
+    private static final ExecutorService EXPORT_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "trace-export");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            EXPORT_EXECUTOR.shutdown();
+            try {
+                EXPORT_EXECUTOR.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "trace-export-drain"));
+    }
+
+    private final String serviceName;
+    private final SpanExporter exporter;
+    private final ConcurrentMap<String, String> parentAgents = new ConcurrentHashMap<>();
+    private final Set<String> loopAgents = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<String, Trace> traces = new ConcurrentHashMap<>();
+    private final AtomicReference<CriticalPath> lastCriticalPath = new AtomicReference<>();
+    private final long maxTraceAgeNanos;
+    private final int maxTraces;
+    private final AtomicLong nextExpiryNanos = new AtomicLong(System.nanoTime());
+
+    public Tracer(String serviceName, SpanExporter exporter) {
+        this(serviceName, exporter, DEFAULT_MAX_TRACE_AGE, DEFAULT_MAX_TRACES);
+    }
+
+    public Tracer(String serviceName, SpanExporter exporter, Duration maxTraceAge, int maxTraces) {
+        this.serviceName = serviceName;
+        this.exporter = exporter;
+        this.maxTraceAgeNanos = maxTraceAge.toNanos();
+        this.maxTraces = maxTraces;
+    }
+
+    /**
+     * A tracer exporting OTLP-JSON lines to the file named by the {@code adk.trace.file} system property or
+     * the {@code ADK_TRACE_FILE} environment variable. Without either, spans are only analysed, not exported.
+     */
+    public static Tracer fromEnvironment(String serviceName) {
+        String file = System.getProperty("adk.trace.file", System.getenv("ADK_TRACE_FILE"));
+        return new Tracer(serviceName, file == null ? SpanExporter.NONE : new OtlpJsonFileExporter(Path.of(file)));
+    }
+
+    public String serviceName() {
+        return serviceName;
+    }
+
+    public LlmAgent.Builder instrument(LlmAgent.Builder builder) {
+        return builder
+                .beforeAgentCallback(this::beforeAgent)
+                .afterAgentCallback(this::afterAgent)
+                .beforeModelCallback((callbackContext, llmRequest) -> beforeModel(callbackContext))
+                .afterModelCallback(this::afterModel)
+                .beforeToolCallback((invocationContext, tool, args, toolContext) ->
+                        beforeTool(invocationContext.invocationId(), tool, toolContext))
+                .afterToolCallback((invocationContext, tool, args, toolContext, response) ->
+                        afterTool(invocationContext.invocationId(), tool, toolContext, response));
+    }
+
+    /**
+     * Like {@link #instrument(LlmAgent.Builder)}, with {@code beforeModelCallback} run after the tracer's own, as
+     * the agent has room for one only; e.g. {@code CallerLabels.beforeModelCallback()}.
+     */
+    public LlmAgent.Builder instrument(LlmAgent.Builder builder, Callbacks.BeforeModelCallback beforeModelCallback) {
+        return instrument(builder).beforeModelCallback((callbackContext, llmRequest) -> beforeModel(callbackContext)
+                .switchIfEmpty(Maybe.defer(() -> beforeModelCallback.call(callbackContext, llmRequest))));
+    }
+
+    /**
+     * Like {@link #instrument(LlmAgent.Builder, Callbacks.BeforeModelCallback)}, with {@code afterAgentCallback}
+     * run after the tracer's own as well; e.g. {@code UsageMeteringModel.afterAgentCallback()}.
+     */
+    public LlmAgent.Builder instrument(LlmAgent.Builder builder, Callbacks.BeforeModelCallback beforeModelCallback,
+            Callbacks.AfterAgentCallback afterAgentCallback) {
+        return instrument(builder, beforeModelCallback).afterAgentCallback(afterAgentThen(afterAgentCallback));
+    }
+
+    public SequentialAgent.Builder instrument(SequentialAgent.Builder builder) {
+        return builder.beforeAgentCallback(this::beforeAgent).afterAgentCallback(this::afterAgent);
+    }
+
+    public ParallelAgent.Builder instrument(ParallelAgent.Builder builder) {
+        return builder.beforeAgentCallback(this::beforeAgent).afterAgentCallback(this::afterAgent);
+    }
+
+    public DataflowSequentialAgent.Builder instrument(DataflowSequentialAgent.Builder builder) {
+        return builder.beforeAgentCallback(this::beforeAgent).afterAgentCallback(this::afterAgent);
+    }
+
+    public QuorumParallelAgent.Builder instrument(QuorumParallelAgent.Builder builder) {
+        return builder.beforeAgentCallback(this::beforeAgent).afterAgentCallback(this::afterAgent);
+    }
+
+    public LoopAgent.Builder instrument(LoopAgent.Builder builder) {
+        return builder.beforeAgentCallback(this::beforeAgent).afterAgentCallback(this::afterAgent);
+    }
+
+    /** Like {@link #instrument(LoopAgent.Builder)}, with {@code afterAgentCallback} run after the tracer's own. */
+    public LoopAgent.Builder instrument(LoopAgent.Builder builder, Callbacks.AfterAgentCallback afterAgentCallback) {
+        return instrument(builder).afterAgentCallback(afterAgentThen(afterAgentCallback));
+    }
+
+    /** Learns the parent of every agent below {@code root}; must be called before the root is run. */
+    public <A extends BaseAgent> A register(A root) {
+        Deque<BaseAgent> pending = new ArrayDeque<>(List.of(root));
+        while (!pending.isEmpty()) {
+            BaseAgent agent = pending.pop();
+            if (agent instanceof LoopAgent) {
+                loopAgents.add(agent.name());
+            }
+            for (BaseAgent child : agent.subAgents()) {
+                parentAgents.put(child.name(), agent.name());
+                pending.push(child);
+            }
+        }
+        return root;
+    }
+
+    /** The critical path of the most recently finished run, if any. */
+    public Optional<CriticalPath> lastCriticalPath() {
+        return Optional.ofNullable(lastCriticalPath.get());
+    }
+
+    private Maybe<Content> beforeAgent(CallbackContext callbackContext) {
+        String agentName = callbackContext.agentName();
+        String parentName = parentAgents.get(agentName);
+        // Only the root agent starts a trace; sub-agents still running after it ended (e.g. shadowed stragglers
+        // of a QuorumParallelAgent) are not traced
+        if (parentName == null) {
+            expireTraces();
+        }
+        Trace trace = parentName == null
+                ? traces.computeIfAbsent(callbackContext.invocationId(), id -> new Trace())
+                : traces.get(callbackContext.invocationId());
+        if (trace == null) {
+            return Maybe.empty();
+        }
+        synchronized (trace) {
+            Span parent = parentName == null ? null : trace.openAgent(parentName);
+            Span span = trace.start(Span.Kind.AGENT, "invoke_agent", agentName, parent)
+                    .attribute("gen_ai.operation.name", "invoke_agent")
+                    .attribute("gen_ai.agent.name", agentName)
+                    .attribute("adk.invocation.id", callbackContext.invocationId());
+            if (parent != null && loopAgents.contains(parentName)) {
+                span.attribute("loop.iteration",
+                        trace.iterations.merge(parent.spanId() + "/" + agentName, 1, Integer::sum));
+            }
+            trace.openAgents.computeIfAbsent(agentName, name -> new ArrayDeque<>()).push(span);
+        }
+        return Maybe.empty();
+    }
+
+    private Maybe<Content> afterAgent(CallbackContext callbackContext) {
+        Trace trace = traces.get(callbackContext.invocationId());
+        if (trace == null) {
+            return Maybe.empty();
+        }
+        String agentName = callbackContext.agentName();
+        boolean root;
+        synchronized (trace) {
+            Deque<Span> open = trace.openAgents.get(agentName);
+            if (open == null || open.isEmpty()) {
+                return Maybe.empty();
+            }
+            Span span = open.pop();
+            trace.end(span);
+            root = span.parentSpanId() == null;
+        }
+        if (root && traces.remove(callbackContext.invocationId(), trace)) {
+            finish(trace);
+        }
+        return Maybe.empty();
+    }
+
+    private Callbacks.AfterAgentCallback afterAgentThen(Callbacks.AfterAgentCallback afterAgentCallback) {
+        return callbackContext -> afterAgent(callbackContext)
+                .switchIfEmpty(Maybe.defer(() -> afterAgentCallback.call(callbackContext)));
+    }
+
+    private Maybe<LlmResponse> beforeModel(CallbackContext callbackContext) {
+        Trace trace = traces.get(callbackContext.invocationId());
+        if (trace != null) {
+            String agentName = callbackContext.agentName();
+            synchronized (trace) {
+                Span span = trace.start(Span.Kind.MODEL, "call_llm", agentName, trace.openAgent(agentName))
+                        .attribute("gen_ai.operation.name", "chat")
+                        .attribute("gen_ai.agent.name", agentName);
+                trace.openModels.put(agentName, span);
+            }
+        }
+        return Maybe.empty();
+    }
+
+    private Maybe<LlmResponse> afterModel(CallbackContext callbackContext, LlmResponse llmResponse) {
+        Trace trace = traces.get(callbackContext.invocationId());
+        if (trace == null || llmResponse.partial().orElse(false)) {
+            return Maybe.empty();
+        }
+        synchronized (trace) {
+            Span span = trace.openModels.remove(callbackContext.agentName());
+            if (span != null) {
+                llmResponse.usageMetadata().ifPresent(usage -> span
+                        .attribute("gen_ai.usage.input_tokens", usage.promptTokenCount().orElse(null))
+                        .attribute("gen_ai.usage.output_tokens", usage.candidatesTokenCount().orElse(null)));
+                llmResponse.errorMessage().ifPresent(span::fail);
+                trace.end(span);
+            }
+        }
+        return Maybe.empty();
+    }
+
+    private Maybe<Map<String, Object>> beforeTool(String invocationId, BaseTool tool, ToolContext toolContext) {
+        Trace trace = traces.get(invocationId);
+        if (trace != null) {
+            String agentName = toolContext.agentName();
+            synchronized (trace) {
+                Span span = trace.start(Span.Kind.TOOL, "execute_tool", agentName, trace.openAgent(agentName))
+                        .attribute("gen_ai.operation.name", "execute_tool")
+                        .attribute("gen_ai.tool.name", tool.name())
+                        .attribute("gen_ai.tool.call.id", toolContext.functionCallId().orElse(null));
+                trace.openTools.put(toolKey(tool.name(), toolContext), span);
+            }
+        }
+        return Maybe.empty();
+    }
+
+    private Maybe<Map<String, Object>> afterTool(
+            String invocationId, BaseTool tool, ToolContext toolContext, Object response) {
+        Trace trace = traces.get(invocationId);
+        if (trace != null) {
+            synchronized (trace) {
+                Span span = trace.openTools.remove(toolKey(tool.name(), toolContext));
+                if (span != null) {
+                    if (response instanceof Map<?, ?> result && "error".equals(result.get("status"))) {
+                        span.fail(String.valueOf(result.get("report")));
+                    }
+                    trace.end(span);
+                }
+            }
+        }
+        return Maybe.empty();
+    }
+
+    private static String toolKey(String toolName, ToolContext toolContext) {
+        return toolContext.functionCallId().orElse(toolContext.agentName() + "/" + toolName);
+    }
+
+    /** Expires the traces of runs that failed or were cancelled; at most once a second unless at the limit. */
+    private void expireTraces() {
+        long now = System.nanoTime();
+        long next = nextExpiryNanos.get();
+        if (now - next < 0 && traces.size() < maxTraces) {
+            return;
+        }
+        if (!nextExpiryNanos.compareAndSet(next, now + EXPIRY_INTERVAL_NANOS)) {
+            return; // another run is expiring
+        }
+        Map.Entry<String, Trace> oldest = null;
+        for (Map.Entry<String, Trace> entry : traces.entrySet()) {
+            if (now - entry.getValue().startNanos > maxTraceAgeNanos) {
+                expire(entry.getKey(), entry.getValue());
+            } else if (oldest == null || entry.getValue().startNanos - oldest.getValue().startNanos < 0) {
+                oldest = entry;
+            }
+        }
+        if (oldest != null && traces.size() >= maxTraces) {
+            expire(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    private void expire(String invocationId, Trace trace) {
+        if (!traces.remove(invocationId, trace)) {
+            return;
+        }
+        List<Span> spans = trace.close("abandoned: the run ended without finishing this span");
+        AgentMetrics.increment("tracing.expired");
+        export(trace, spans);
+    }
+
+    private void finish(Trace trace) {
+        // Cancelled stragglers of a quorum, and model calls cut short, never reach their after-callbacks
+        List<Span> spans = trace.close("cancelled: the root agent finished before this span");
+        export(trace, spans);
+        CriticalPath criticalPath = CriticalPath.analyze(spans);
+        lastCriticalPath.set(criticalPath);
+        for (CriticalPath.Step step : criticalPath.steps()) {
+            if (step.span().kind() == Span.Kind.AGENT) {
+                AgentMetrics.record("tracing.critical." + step.span().agentName() + ".us", step.selfNanos() / 1_000);
+            }
+        }
+        LOG.debug("{}", criticalPath.format());
+    }
+
+    /** Exports on the export thread, so that file or network I/O does not delay the run's last callback. */
+    private void export(Trace trace, List<Span> spans) {
+        AgentMetrics.add("tracing.spans", spans.size());
+        if (exporter == SpanExporter.NONE) {
+            return;
+        }
+        EXPORT_EXECUTOR.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                exporter.export(serviceName, spans);
+                AgentMetrics.recordSince("tracing.export.latency.us", start);
+            } catch (RuntimeException e) {
+                AgentMetrics.increment("tracing.export.failed");
+                LOG.warn("Failed to export trace {}", trace.traceId, e);
+            }
+        });
+    }
+
+    static long now() {
+        return EPOCH_OFFSET_NANOS + System.nanoTime();
+    }
+
+    static String randomId(int bytes) {
+        byte[] id = new byte[bytes];
+        ThreadLocalRandom.current().nextBytes(id);
+        return HexFormat.of().formatHex(id);
+    }
+
+    /** Spans of one invocation; guarded by its own monitor. */
+    private static final class Trace {
+        private final String traceId = randomId(16);
+        private final long startNanos = System.nanoTime();
+        private final Map<String, Deque<Span>> openAgents = new HashMap<>();
+        private final Map<String, Span> openModels = new HashMap<>();
+        private final Map<String, Span> openTools = new HashMap<>();
+        private final Map<String, Integer> iterations = new HashMap<>();
+        private final List<Span> finished = new ArrayList<>();
+
+        Span start(Span.Kind kind, String name, String agentName, Span parent) {
+            return new Span(traceId, randomId(8), parent == null ? null : parent.spanId(), kind, name, agentName,
+                    now());
+        }
+
+        Span openAgent(String agentName) {
+            Deque<Span> open = openAgents.get(agentName);
+            return open == null ? null : open.peek();
+        }
+
+        void end(Span span) {
+            span.end(now());
+            finished.add(span);
+        }
+
+        /** Ends the spans still open as failed with {@code reason}, and returns all spans. */
+        synchronized List<Span> close(String reason) {
+            List<Span> open = new ArrayList<>(openModels.values());
+            open.addAll(openTools.values());
+            openAgents.values().forEach(open::addAll);
+            for (Span span : open) {
+                span.fail(reason);
+                end(span);
+            }
+            openAgents.clear();
+            openModels.clear();
+            openTools.clear();
+            return List.copyOf(finished);
+        }
+    }
+}